@@ -0,0 +1,176 @@
+package rep.mapping;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import rep.mapping.bench.SyntheticExportGenerator;
+import rep.mapping.bench.SyntheticExportGenerator.Layout;
+
+/**
+ * Measures each stage of {@link RepDataMapper} separately, plus an end-to-end
+ * {@link RepDataMapper#run()}, over a generated export in each dialect's layout.
+ * <p>
+ * Every benchmark counts one operation per row (input rows for parsing and
+ * grouping, output rows for summarizing and formatting), so the reported
+ * throughput is rows/sec and the GC profiler's {@code gc.alloc.rate.norm} is
+ * bytes allocated per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RepDataMapperBenchmark {
+
+	private static final int PARTICIPANTS = 2_000;
+	private static final int SESSIONS_PER_PARTICIPANT = 25;
+	private static final int TERM_DAYS = 100;
+	private static final LocalDate FIRST_DATE = LocalDate.of(2019, 1, 7);
+
+	private static final int INPUT_ROWS = PARTICIPANTS * SESSIONS_PER_PARTICIPANT;
+	private static final int OUTPUT_ROWS = PARTICIPANTS * TERM_DAYS;
+
+	@Param
+	public ExportDialect dialect;
+
+	private Path workDir;
+	private RepDataMapper mapper;
+	private List<String> inputLines;
+	private List<PackedSessions> participants;
+	private List<OutputRecord> outputRecords;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		workDir = Files.createTempDirectory("rep-bench");
+		Path srcPath = workDir.resolve("export.csv");
+		Path destPath = workDir.resolve("restructured.csv");
+
+		SyntheticExportGenerator generator = new SyntheticExportGenerator(Layout.valueOf(dialect.name()),
+				PARTICIPANTS, SESSIONS_PER_PARTICIPANT, FIRST_DATE, TERM_DAYS, 1L);
+		generator.write(srcPath);
+
+		mapper = new RepDataMapper(srcPath.toString(), destPath.toString(), FIRST_DATE, generator.getLastDate(),
+				dialect, new RepMapperOptions());
+		inputLines = Files.readAllLines(srcPath);
+		inputLines.remove(0); // ignore labels
+		participants = mapper.mapToParticipants(inputLines);
+		outputRecords = participants.stream() //
+				.flatMap(x -> mapper.generateDaySummaries(x).stream()) //
+				.collect(Collectors.toList());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.walk(workDir) //
+				.sorted((a, b) -> b.compareTo(a)) //
+				.forEach(x -> x.toFile().delete());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(INPUT_ROWS)
+	public List<PackedSessions> mapToParticipants() {
+		return mapper.mapToParticipants(inputLines);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OUTPUT_ROWS)
+	public void generateDaySummaries(Blackhole blackhole) {
+		for (PackedSessions participant : participants) {
+			blackhole.consume(mapper.generateDaySummaries(participant));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OUTPUT_ROWS)
+	public void formatOutput() throws IOException {
+		CsvRecordWriter writer = new CsvRecordWriter(new DiscardingWriter());
+		for (OutputRecord outputRecord : outputRecords) {
+			mapper.writeOutput(outputRecord, writer);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(INPUT_ROWS)
+	public void run(QuietStdout quiet) {
+		mapper.run();
+	}
+
+	/** Discards what {@link RepDataMapper#run()} prints, so the run benchmark doesn't measure the console. */
+	@State(Scope.Thread)
+	public static class QuietStdout {
+		private PrintStream stdout;
+
+		@Setup(Level.Trial)
+		public void silence() {
+			stdout = System.out;
+			System.setOut(new PrintStream(new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+				}
+			}));
+		}
+
+		@TearDown(Level.Trial)
+		public void restore() {
+			System.setOut(stdout);
+		}
+	}
+
+	private static class DiscardingWriter extends Writer {
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder() //
+				.include(RepDataMapperBenchmark.class.getSimpleName()) //
+				.addProfiler(GCProfiler.class) //
+				.build()).run();
+	}
+}
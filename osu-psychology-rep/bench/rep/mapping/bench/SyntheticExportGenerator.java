@@ -0,0 +1,154 @@
+package rep.mapping.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Writes deterministic, REP-like enrollment exports for benchmarking. The same
+ * seed and sizes always produce the same file.
+ */
+public class SyntheticExportGenerator {
+
+	public enum Layout {
+		/** 12 columns, {@code \N} nulls, {@code M/d/yyyy} dates */
+		ORIGINAL("email,lastName,debit,creditEarned,cancel,enroll,experiment,removeExpDelete,code,startTime,endTime,sessionDate", "\\N", false),
+		/** 9 columns, {@code NULL} nulls, {@code M/d/yy} dates */
+		JAVIER("id,absence,credit,cancel,enroll,experiment,code,sessionDate,sessionTime", "NULL", true);
+
+		private final String header;
+		private final String nullValue;
+		private final boolean twoDigitYear;
+
+		Layout(String header, String nullValue, boolean twoDigitYear) {
+			this.header = header;
+			this.nullValue = nullValue;
+			this.twoDigitYear = twoDigitYear;
+		}
+	}
+
+	private static final String TREATMENT_SESSION_CODE = "SRF1R1";
+	private static final String[] SESSION_CODES = { "A1", "B2", "C1", "ONL1", TREATMENT_SESSION_CODE };
+	private static final String[] LAST_NAMES = { "Smith", "Johnson", "Nguyen", "Garcia", "O'Brien" };
+	private static final int EXPERIMENT_COUNT = 60;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private final Layout layout;
+	private final int participants;
+	private final int sessionsPerParticipant;
+	private final LocalDate firstDate;
+	private final int termDays;
+	private final long seed;
+
+	public SyntheticExportGenerator(Layout layout, int participants, int sessionsPerParticipant, LocalDate firstDate,
+			int termDays, long seed) {
+		this.layout = layout;
+		this.participants = participants;
+		this.sessionsPerParticipant = sessionsPerParticipant;
+		this.firstDate = firstDate;
+		this.termDays = termDays;
+		this.seed = seed;
+	}
+
+	public LocalDate getLastDate() {
+		return firstDate.plusDays(termDays - 1);
+	}
+
+	public void write(Path destPath) throws IOException {
+		Random random = new Random(seed);
+
+		try (BufferedWriter writer = new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(destPath), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+			writer.write(layout.header);
+			writer.newLine();
+
+			// rows are interleaved across participants, as in a real export
+			for (int s = 0; s < sessionsPerParticipant; s++) {
+				for (int p = 0; p < participants; p++) {
+					writer.write(nextRecord(random, p));
+					writer.newLine();
+				}
+			}
+		}
+	}
+
+	private String nextRecord(Random random, int participant) {
+		String nul = layout.nullValue;
+
+		LocalDate sessionDate = firstDate.plusDays(random.nextInt(termDays));
+		boolean cancelled = random.nextInt(10) == 0;
+		boolean enrolled = !cancelled || random.nextBoolean();
+		boolean past = !cancelled && enrolled;
+		boolean attended = past && random.nextInt(5) != 0;
+		boolean missed = past && !attended;
+		String credit = random.nextBoolean() ? "0.5" : "1";
+		String sessionCode = SESSION_CODES[random.nextInt(SESSION_CODES.length)];
+		int startHour = 8 + random.nextInt(10);
+		String startTime = startHour + ":" + (random.nextBoolean() ? "00" : "30") + ":00";
+
+		String creditEarned = attended ? credit : past ? "0" : nul;
+		String creditMissed = missed ? credit : past ? "0" : nul;
+		String cancelDateTime = cancelled ? formatDateTime(sessionDate.minusDays(random.nextInt(3)), random) : nul;
+		String enrollDateTime = enrolled ? formatDateTime(sessionDate.minusDays(1 + random.nextInt(14)), random) : nul;
+		String experimentId = String.valueOf(1000 + random.nextInt(EXPERIMENT_COUNT));
+
+		StringBuilder sb = new StringBuilder(128);
+		if (layout == Layout.ORIGINAL) {
+			sb.append("participant").append(participant).append("@osu.edu").append(',');
+			sb.append(random.nextInt(50) == 0 ? LAST_NAMES[random.nextInt(LAST_NAMES.length)] : nul).append(',');
+			sb.append(missed ? credit : "0").append(',');
+			sb.append(creditEarned).append(',');
+			sb.append(cancelDateTime).append(',');
+			sb.append(enrollDateTime).append(',');
+			sb.append(experimentId).append(',');
+			sb.append(random.nextInt(20) == 0 ? "1" : nul).append(',');
+			sb.append(sessionCode).append(',');
+			sb.append(startTime).append(',');
+			sb.append(startHour + 1).append(":00:00").append(',');
+			sb.append(formatDate(sessionDate));
+		} else {
+			sb.append(String.format("P%06d", participant)).append(',');
+			sb.append(creditMissed).append(',');
+			sb.append(creditEarned).append(',');
+			sb.append(cancelDateTime).append(',');
+			sb.append(enrollDateTime).append(',');
+			sb.append(experimentId).append(',');
+			sb.append(sessionCode).append(',');
+			sb.append(formatDate(sessionDate)).append(',');
+			sb.append(startTime);
+		}
+		return sb.toString();
+	}
+
+	private String formatDate(LocalDate date) {
+		String year = layout.twoDigitYear ? String.format("%02d", date.getYear() % 100) : String.valueOf(date.getYear());
+		return date.getMonthValue() + "/" + date.getDayOfMonth() + "/" + year;
+	}
+
+	private String formatDateTime(LocalDate date, Random random) {
+		return formatDate(date) + " " + random.nextInt(24) + ":" + String.format("%02d", random.nextInt(60));
+	}
+
+	public static void main(String[] args) throws IOException {
+		Layout layout = Layout.valueOf(args[0]);
+		Path destPath = Paths.get(args[1]);
+		int participants = Integer.parseInt(args[2]);
+		int sessionsPerParticipant = Integer.parseInt(args[3]);
+		LocalDate firstDate = LocalDate.parse(args[4]);
+		int termDays = Integer.parseInt(args[5]);
+		long seed = args.length > 6 ? Long.parseLong(args[6]) : 1L;
+
+		SyntheticExportGenerator generator = new SyntheticExportGenerator(layout, participants, sessionsPerParticipant,
+				firstDate, termDays, seed);
+		generator.write(destPath);
+
+		System.out.println("Wrote " + participants * sessionsPerParticipant + " rows to " + destPath
+				+ ", covering " + firstDate + " to " + generator.getLastDate());
+	}
+}
@@ -0,0 +1,158 @@
+package rep.mapping;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Daily enrollment, attendance, cancellation, missed and credit totals per
+ * experiment and per session code, accumulated row by row while the export is
+ * parsed. Each dimension keeps one primitive array per total, indexed by value
+ * code and day, covering the first to the last date.
+ */
+class AggregateCube {
+
+	static final String HEADER = "dimension,value,dayNum,date,enrolledCount,participatedCount,cancelCount,"
+			+ "missedCount,creditsEarned,creditsMissed";
+
+	private final long firstEpochDay;
+	private final int dayCount;
+	private final Dimension experiments = new Dimension("experiment");
+	private final Dimension sessionCodes = new Dimension("sessionCode");
+
+	AggregateCube(LocalDate firstDate, LocalDate lastDate) {
+		firstEpochDay = firstDate.toEpochDay();
+		dayCount = Math.max((int) (lastDate.toEpochDay() - firstEpochDay + 1), 0);
+	}
+
+	/** Adds one export row; rows dated outside the first to last date are left out, as in the day summaries. */
+	void add(CsvLineTokenizer fields, ExportDialect dialect, int epochDay, int flags, int creditsEarned,
+			int creditsMissed) {
+		add(fields, dialect, epochDay, flags, creditsEarned, creditsMissed, 1);
+	}
+
+	/** Takes back a row added before, such as a duplicate superseded by a later row for the same session. */
+	void remove(CsvLineTokenizer fields, ExportDialect dialect, int epochDay, int flags, int creditsEarned,
+			int creditsMissed) {
+		add(fields, dialect, epochDay, flags, creditsEarned, creditsMissed, -1);
+	}
+
+	private void add(CsvLineTokenizer fields, ExportDialect dialect, int epochDay, int flags, int creditsEarned,
+			int creditsMissed, int sign) {
+		if (epochDay == PackedSessions.NO_DATE || epochDay < firstEpochDay || epochDay - firstEpochDay >= dayCount) {
+			return;
+		}
+		int dayOffset = (int) (epochDay - firstEpochDay);
+
+		experiments.add(experiments.values.codeOf(fields, dialect.getExperimentIdColumn()), dayOffset, flags,
+				creditsEarned, creditsMissed, sign);
+		sessionCodes.add(sessionCodes.values.codeOf(fields, dialect.getSessionCodeColumn()), dayOffset, flags,
+				creditsEarned, creditsMissed, sign);
+	}
+
+	/** Adds another cube's totals, such as one built from a different chunk of the same export. */
+	void addAll(AggregateCube other) {
+		experiments.addAll(other.experiments);
+		sessionCodes.addAll(other.sessionCodes);
+	}
+
+	void write(CsvRecordWriter writer) throws IOException {
+		writer.line(HEADER);
+		experiments.write(writer);
+		sessionCodes.write(writer);
+	}
+
+	private class Dimension {
+		private final String name;
+		private final FieldDictionary values = new FieldDictionary();
+
+		private int[] enrolledCounts = new int[0];
+		private int[] participatedCounts = new int[0];
+		private int[] cancelCounts = new int[0];
+		private int[] missedCounts = new int[0];
+		private long[] creditsEarned = new long[0]; // fixed-point, see PackedSessions.CREDIT_SCALE
+		private long[] creditsMissed = new long[0]; // fixed-point, see PackedSessions.CREDIT_SCALE
+
+		Dimension(String name) {
+			this.name = name;
+		}
+
+		void add(int code, int dayOffset, int flags, int rowCreditsEarned, int rowCreditsMissed, int sign) {
+			int cell = code * dayCount + dayOffset;
+			if (cell >= enrolledCounts.length) {
+				grow(code + 1);
+			}
+
+			if ((flags & PackedSessions.ENROLLED) != 0) {
+				enrolledCounts[cell] += sign;
+			}
+			if ((flags & PackedSessions.ATTENDED) != 0) {
+				participatedCounts[cell] += sign;
+			}
+			if ((flags & PackedSessions.CANCELLED) != 0) {
+				cancelCounts[cell] += sign;
+			}
+			if ((flags & PackedSessions.MISSED) != 0) {
+				missedCounts[cell] += sign;
+			}
+			creditsEarned[cell] += sign * rowCreditsEarned;
+			creditsMissed[cell] += sign * rowCreditsMissed;
+		}
+
+		private void grow(int minCodes) {
+			int cells = Math.max(minCodes, enrolledCounts.length / Math.max(dayCount, 1) * 2) * dayCount;
+			enrolledCounts = Arrays.copyOf(enrolledCounts, cells);
+			participatedCounts = Arrays.copyOf(participatedCounts, cells);
+			cancelCounts = Arrays.copyOf(cancelCounts, cells);
+			missedCounts = Arrays.copyOf(missedCounts, cells);
+			creditsEarned = Arrays.copyOf(creditsEarned, cells);
+			creditsMissed = Arrays.copyOf(creditsMissed, cells);
+		}
+
+		void addAll(Dimension other) {
+			for (int otherCode = 0; otherCode < other.values.size(); otherCode++) {
+				int code = values.codeOf(other.values.get(otherCode));
+				int cell = code * dayCount;
+				if (cell + dayCount > enrolledCounts.length) {
+					grow(code + 1);
+				}
+
+				int otherCell = otherCode * dayCount;
+				for (int dayOffset = 0; dayOffset < dayCount; dayOffset++) {
+					enrolledCounts[cell + dayOffset] += other.enrolledCounts[otherCell + dayOffset];
+					participatedCounts[cell + dayOffset] += other.participatedCounts[otherCell + dayOffset];
+					cancelCounts[cell + dayOffset] += other.cancelCounts[otherCell + dayOffset];
+					missedCounts[cell + dayOffset] += other.missedCounts[otherCell + dayOffset];
+					creditsEarned[cell + dayOffset] += other.creditsEarned[otherCell + dayOffset];
+					creditsMissed[cell + dayOffset] += other.creditsMissed[otherCell + dayOffset];
+				}
+			}
+		}
+
+		void write(CsvRecordWriter writer) throws IOException {
+			int[] codesByValue = IntStream.range(0, values.size()).boxed() //
+					.sorted(Comparator.comparing(values::get)) //
+					.mapToInt(Integer::intValue) //
+					.toArray();
+
+			for (int code : codesByValue) {
+				for (int dayOffset = 0; dayOffset < dayCount; dayOffset++) {
+					int cell = code * dayCount + dayOffset;
+					writer.field(name);
+					writer.field(values.get(code));
+					writer.field(dayOffset + 1);
+					writer.field(LocalDate.ofEpochDay(firstEpochDay + dayOffset));
+					writer.field(enrolledCounts[cell]);
+					writer.field(participatedCounts[cell]);
+					writer.field(cancelCounts[cell]);
+					writer.field(missedCounts[cell]);
+					writer.field(PackedSessions.fromFixedPoint(creditsEarned[cell]));
+					writer.field(PackedSessions.fromFixedPoint(creditsMissed[cell]));
+					writer.endRecord();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package rep.mapping;
+
+import java.time.LocalDate;
+
+import lombok.Data;
+
+/** A first to last date range summarized into its own output, as if the mapper had been run for just those dates. */
+@Data
+public class AnalysisWindow {
+    private LocalDate firstDate;
+    private LocalDate lastDate;
+    private String destPath;
+
+    public AnalysisWindow(LocalDate firstDate, LocalDate lastDate, String destPath) {
+        if (lastDate.isBefore(firstDate)) {
+            throw new IllegalArgumentException("window last date " + lastDate + " is before its first date " + firstDate);
+        }
+        this.firstDate = firstDate;
+        this.lastDate = lastDate;
+        this.destPath = destPath;
+    }
+
+    /**
+     * Where a bin's output goes: the dest with the bin's first date added before its extension, e.g.
+     * {@code out - 2019-01-14.csv.gz} for {@code out.csv.gz}.
+     */
+    static String binDestPath(String destPath, LocalDate binFirstDate) {
+        return CompressedFiles.withNameSuffix(destPath, " - " + binFirstDate);
+    }
+}
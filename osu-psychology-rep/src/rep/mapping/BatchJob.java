@@ -0,0 +1,67 @@
+package rep.mapping;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BatchJob {
+    private String sourcePath;
+    private String destPath;
+    private ExportDialect dialect;
+    private LocalDate firstDate;
+    private LocalDate lastDate;
+
+    private static final String DEST_SUFFIX = " - restructured.csv";
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * Reads a manifest with one job per line, as
+     * {@code source,dialect,firstDate,lastDate[,dest]}. Blank lines and lines
+     * starting with {@code #} are skipped. Without a dest, the output goes next
+     * to the source as {@link #defaultDestPath(String)}.
+     */
+    public static List<BatchJob> readManifest(Path manifestPath) throws IOException {
+        List<BatchJob> jobs = new ArrayList<>();
+
+        for (String line : Files.readAllLines(manifestPath)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = trimmed.split("\\s*,\\s*");
+            if (fields.length < 4) {
+                throw new IllegalArgumentException("expected source,dialect,firstDate,lastDate[,dest] but got: " + line);
+            }
+
+            String sourcePath = fields[0];
+            String destPath = fields.length > 4 ? fields[4] : defaultDestPath(sourcePath);
+            jobs.add(new BatchJob(sourcePath, destPath, ExportDialect.forName(fields[1]), LocalDate.parse(fields[2]),
+                    LocalDate.parse(fields[3])));
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Where output for the source goes when no dest is given: {@code <source name> - restructured.csv}, or
+     * {@code <source name> - restructured.csv.gz} for a compressed source.
+     */
+    public static String defaultDestPath(String sourcePath) {
+        String uncompressedPath = CompressedFiles.stripCompressionExtension(sourcePath);
+        boolean compressed = uncompressedPath.length() < sourcePath.length();
+
+        int extension = uncompressedPath.lastIndexOf('.');
+        boolean hasExtension = extension > Math.max(uncompressedPath.lastIndexOf('/'), uncompressedPath.lastIndexOf('\\'));
+        return (hasExtension ? uncompressedPath.substring(0, extension) : uncompressedPath) + DEST_SUFFIX
+                + (compressed ? GZIP_SUFFIX : "");
+    }
+}
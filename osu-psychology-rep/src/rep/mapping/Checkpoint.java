@@ -0,0 +1,194 @@
+package rep.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * What an incremental re-run needs to carry on from a previous run: how far
+ * into the source file it read and how many lines that was, how large the
+ * output it wrote was, and every participant's cumulative state as of the last
+ * summarized date, along with the sessions already read that fall after that
+ * date.
+ */
+class Checkpoint {
+
+	private static final int MAGIC = 0x52455043; // "REPC"
+	private static final int VERSION = 3;
+	private static final int FINGERPRINT_BYTES = 1 << 12;
+
+	private final String dialectName;
+	private final long sourceSize;
+	private final long sourceFingerprint;
+	private final long sourceLineCount;
+	private final long outputSize;
+	private final long firstEpochDay;
+	private final long lastEpochDay;
+	private final Map<String, CumulativeState> participantStates;
+	private final Map<String, PackedSessions> pendingSessions;
+
+	Checkpoint(String dialectName, long sourceSize, long sourceFingerprint, long sourceLineCount, long outputSize,
+			long firstEpochDay, long lastEpochDay, Map<String, CumulativeState> participantStates,
+			Map<String, PackedSessions> pendingSessions) {
+		this.dialectName = dialectName;
+		this.sourceSize = sourceSize;
+		this.sourceFingerprint = sourceFingerprint;
+		this.sourceLineCount = sourceLineCount;
+		this.outputSize = outputSize;
+		this.firstEpochDay = firstEpochDay;
+		this.lastEpochDay = lastEpochDay;
+		this.participantStates = participantStates;
+		this.pendingSessions = pendingSessions;
+	}
+
+	String getDialectName() {
+		return dialectName;
+	}
+
+	long getSourceSize() {
+		return sourceSize;
+	}
+
+	long getSourceFingerprint() {
+		return sourceFingerprint;
+	}
+
+	/** Lines in the source up to the high-water mark, labels included, so appended rows can be numbered. */
+	long getSourceLineCount() {
+		return sourceLineCount;
+	}
+
+	long getOutputSize() {
+		return outputSize;
+	}
+
+	long getFirstEpochDay() {
+		return firstEpochDay;
+	}
+
+	long getLastEpochDay() {
+		return lastEpochDay;
+	}
+
+	/** Participant states, sorted by participant id. */
+	Map<String, CumulativeState> getParticipantStates() {
+		return participantStates;
+	}
+
+	Map<String, PackedSessions> getPendingSessions() {
+		return pendingSessions;
+	}
+
+	/**
+	 * A CRC of the bytes just before the high-water mark, used to check that the
+	 * source has only been appended to since the checkpoint was taken.
+	 */
+	static long fingerprint(FileChannel channel, long sourceSize) throws IOException {
+		int length = (int) Math.min(FINGERPRINT_BYTES, sourceSize);
+		ByteBuffer tail = ByteBuffer.allocate(length);
+		long position = sourceSize - length;
+		while (tail.hasRemaining()) {
+			if (channel.read(tail, position + tail.position()) < 0) {
+				break;
+			}
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(tail.array(), 0, tail.position());
+		return crc.getValue();
+	}
+
+	/** Reads a checkpoint, or returns null if there is none or it is not one of ours. */
+	static Checkpoint read(Path checkpointPath) throws IOException {
+		if (!Files.exists(checkpointPath)) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointPath)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+
+			String dialectName = in.readUTF();
+			long sourceSize = in.readLong();
+			long sourceFingerprint = in.readLong();
+			long sourceLineCount = in.readLong();
+			long outputSize = in.readLong();
+			long firstEpochDay = in.readLong();
+			long lastEpochDay = in.readLong();
+
+			Map<String, CumulativeState> participantStates = new TreeMap<>();
+			Map<String, PackedSessions> pendingSessions = new TreeMap<>();
+			int participantCount = in.readInt();
+			for (int p = 0; p < participantCount; p++) {
+				String participantId = in.readUTF();
+
+				CumulativeState state = new CumulativeState();
+				state.setCumulativeCreditsEarned(in.readLong());
+				state.setCumulativeCreditsMissed(in.readLong());
+				state.setRecievedTreatment(in.readBoolean());
+				participantStates.put(participantId, state);
+
+				int pendingCount = in.readInt();
+				if (pendingCount > 0) {
+					PackedSessions sessions = new PackedSessions(participantId);
+					for (int i = 0; i < pendingCount; i++) {
+						sessions.add(in.readInt(), in.readInt(), in.readInt(), in.readByte());
+					}
+					pendingSessions.put(participantId, sessions);
+				}
+			}
+
+			return new Checkpoint(dialectName, sourceSize, sourceFingerprint, sourceLineCount, outputSize, firstEpochDay,
+					lastEpochDay, participantStates, pendingSessions);
+		}
+	}
+
+	/** Writes the checkpoint to a temporary file and moves it into place. */
+	void write(Path checkpointPath) throws IOException {
+		Path tempPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(dialectName);
+			out.writeLong(sourceSize);
+			out.writeLong(sourceFingerprint);
+			out.writeLong(sourceLineCount);
+			out.writeLong(outputSize);
+			out.writeLong(firstEpochDay);
+			out.writeLong(lastEpochDay);
+
+			out.writeInt(participantStates.size());
+			for (Map.Entry<String, CumulativeState> entry : participantStates.entrySet()) {
+				CumulativeState state = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(state.getCumulativeCreditsEarned());
+				out.writeLong(state.getCumulativeCreditsMissed());
+				out.writeBoolean(state.isRecievedTreatment());
+
+				PackedSessions sessions = pendingSessions.get(entry.getKey());
+				int pendingCount = sessions == null ? 0 : sessions.size();
+				out.writeInt(pendingCount);
+				for (int i = 0; i < pendingCount; i++) {
+					out.writeInt(sessions.getEpochDay(i));
+					out.writeInt(sessions.getCreditsEarned(i));
+					out.writeInt(sessions.getCreditsMissed(i));
+					out.writeByte(sessions.getFlags(i));
+				}
+			}
+		}
+
+		Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
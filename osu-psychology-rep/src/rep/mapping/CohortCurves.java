@@ -0,0 +1,186 @@
+package rep.mapping;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cohort-level curves of cumulative credits earned and missed: for each day
+ * number, the participant count, sum, mean and variance over the participants
+ * treated by that day and over those not yet treated, and, for treated
+ * participants, the same again aligned on days since their first treatment.
+ *
+ * <p>Each thread adds participants to its own stripe of primitive sums, so
+ * summary threads never contend. The sums are of fixed-point credits and their
+ * squares, which are exact, so the merged stripes are the same whatever order
+ * the participants were added in and on however many threads.
+ */
+class CohortCurves {
+
+	static final String HEADER = "alignment,day,date,cohort,participantCount,"
+			+ "cumulativeCreditsEarnedSum,cumulativeCreditsEarnedMean,cumulativeCreditsEarnedVariance,"
+			+ "cumulativeCreditsMissedSum,cumulativeCreditsMissedMean,cumulativeCreditsMissedVariance";
+
+	private static final int UNTREATED = 0;
+	private static final int TREATED = 1;
+
+	private final LocalDate firstDate;
+	private final int dayCount;
+	private final List<Stripe> stripes = new ArrayList<>();
+	private final ThreadLocal<Stripe> threadStripe = ThreadLocal.withInitial(this::newStripe);
+
+	CohortCurves(LocalDate firstDate, LocalDate lastDate) {
+		this.firstDate = firstDate;
+		this.dayCount = Math.max((int) (lastDate.toEpochDay() - firstDate.toEpochDay() + 1), 0);
+	}
+
+	private Stripe newStripe() {
+		Stripe stripe = new Stripe();
+		synchronized (stripes) {
+			stripes.add(stripe);
+		}
+		return stripe;
+	}
+
+	/** Adds a participant's day summaries, one per day from the first date, from any thread. */
+	void add(List<OutputRecord> daySummaries) {
+		threadStripe.get().add(daySummaries);
+	}
+
+	/** Merges the stripes and writes the curves; call once every participant is added. */
+	void write(CsvRecordWriter writer) throws IOException {
+		Stripe merged = new Stripe();
+		synchronized (stripes) {
+			for (Stripe stripe : stripes) {
+				merged.addAll(stripe);
+			}
+		}
+
+		writer.line(HEADER);
+		for (int dayOffset = 0; dayOffset < dayCount; dayOffset++) {
+			for (int cohort : new int[] { UNTREATED, TREATED }) {
+				writer.field("dayNum");
+				writer.field(dayOffset + 1);
+				writer.field(firstDate.plusDays(dayOffset));
+				writer.field(cohort == TREATED ? "treated" : "untreated");
+				merged.byDay.write(cohort * dayCount + dayOffset, writer);
+			}
+		}
+		for (int cell = 0; cell < merged.sinceTreatment.counts.length; cell++) {
+			if (merged.sinceTreatment.counts[cell] == 0) {
+				continue;
+			}
+			writer.field("daysSinceTreatment");
+			writer.field(cell - (dayCount - 1));
+			writer.field("");
+			writer.field("treated");
+			merged.sinceTreatment.write(cell, writer);
+		}
+	}
+
+	private static long toFixedPoint(double credits) {
+		return Math.round(credits * PackedSessions.CREDIT_SCALE);
+	}
+
+	/** One thread's sums, by day number and cohort, and by days since treatment. */
+	private final class Stripe {
+		private final Moments byDay = new Moments(2 * dayCount);
+		// cell dayCount - 1 is the day of first treatment
+		private final Moments sinceTreatment = new Moments(Math.max(2 * dayCount - 1, 0));
+
+		void add(List<OutputRecord> daySummaries) {
+			int days = Math.min(daySummaries.size(), dayCount);
+			int firstTreatedDay = -1;
+			for (int dayOffset = 0; dayOffset < days; dayOffset++) {
+				OutputRecord outputRecord = daySummaries.get(dayOffset);
+				int cohort = outputRecord.isRecievedTreatment() ? TREATED : UNTREATED;
+				if (cohort == TREATED && firstTreatedDay < 0) {
+					firstTreatedDay = dayOffset;
+				}
+				byDay.add(cohort * dayCount + dayOffset, toFixedPoint(outputRecord.getCumulativeCreditsEarned()),
+						toFixedPoint(outputRecord.getCumulativeCreditsMissed()));
+			}
+
+			if (firstTreatedDay < 0) {
+				return;
+			}
+			for (int dayOffset = 0; dayOffset < days; dayOffset++) {
+				OutputRecord outputRecord = daySummaries.get(dayOffset);
+				sinceTreatment.add(dayOffset - firstTreatedDay + dayCount - 1,
+						toFixedPoint(outputRecord.getCumulativeCreditsEarned()),
+						toFixedPoint(outputRecord.getCumulativeCreditsMissed()));
+			}
+		}
+
+		void addAll(Stripe other) {
+			byDay.addAll(other.byDay);
+			sinceTreatment.addAll(other.sinceTreatment);
+		}
+	}
+
+	/** Count, sum and sum of squares of fixed-point credits per cell. */
+	private static final class Moments {
+		private final long[] counts;
+		private final long[] earnedSums;
+		private final long[] earnedSquares;
+		private final long[] missedSums;
+		private final long[] missedSquares;
+
+		Moments(int cells) {
+			counts = new long[cells];
+			earnedSums = new long[cells];
+			earnedSquares = new long[cells];
+			missedSums = new long[cells];
+			missedSquares = new long[cells];
+		}
+
+		void add(int cell, long earned, long missed) {
+			counts[cell]++;
+			earnedSums[cell] += earned;
+			earnedSquares[cell] = Math.addExact(earnedSquares[cell], Math.multiplyExact(earned, earned));
+			missedSums[cell] += missed;
+			missedSquares[cell] = Math.addExact(missedSquares[cell], Math.multiplyExact(missed, missed));
+		}
+
+		void addAll(Moments other) {
+			for (int cell = 0; cell < counts.length; cell++) {
+				counts[cell] += other.counts[cell];
+				earnedSums[cell] += other.earnedSums[cell];
+				earnedSquares[cell] = Math.addExact(earnedSquares[cell], other.earnedSquares[cell]);
+				missedSums[cell] += other.missedSums[cell];
+				missedSquares[cell] = Math.addExact(missedSquares[cell], other.missedSquares[cell]);
+			}
+		}
+
+		/** Writes the cell's count, then the sum, mean and sample variance of each, blank where undefined. */
+		void write(int cell, CsvRecordWriter writer) throws IOException {
+			long count = counts[cell];
+			writer.field(count);
+			writeStatistics(count, earnedSums[cell], earnedSquares[cell], writer);
+			writeStatistics(count, missedSums[cell], missedSquares[cell], writer);
+			writer.endRecord();
+		}
+
+		private static void writeStatistics(long count, long sum, long squares, CsvRecordWriter writer)
+				throws IOException {
+			writer.field(PackedSessions.fromFixedPoint(sum));
+			if (count == 0) {
+				writer.field("");
+			} else {
+				writer.field(sum / (double) count / PackedSessions.CREDIT_SCALE);
+			}
+			if (count < 2) {
+				writer.field("");
+			} else {
+				// (n * sum of squares - sum^2) / (n (n - 1)), exact until the final division
+				BigInteger n = BigInteger.valueOf(count);
+				BigInteger total = BigInteger.valueOf(sum);
+				double scaledVariance = n.multiply(BigInteger.valueOf(squares)).subtract(total.multiply(total))
+						.doubleValue() / ((double) count * (count - 1));
+				writer.field(scaledVariance / ((double) PackedSessions.CREDIT_SCALE * PackedSessions.CREDIT_SCALE));
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package rep.mapping;
+
+/**
+ * Layout of the columnar output file. A header, written with
+ * {@link java.io.DataOutputStream}, is followed by one region per stored
+ * column, each 8-byte aligned:
+ *
+ * <pre>
+ * int magic, int version, int headerLength
+ * UTF dialect, long firstEpochDay, int rowCount, int creditScale
+ * int participantCount, UTF participantId...
+ * int columnCount, (UTF label, byte type, long offset, long length)...
+ * </pre>
+ *
+ * Column offsets are from the end of the header. Rows are in the same order as
+ * the CSV output. The date column isn't stored; a row's date is the first date
+ * plus its day number, less one.
+ */
+final class ColumnarFormat {
+
+	static final int MAGIC = 0x5245504F; // "REPO"
+	static final int VERSION = 1;
+	static final int ALIGNMENT = 8;
+
+	/** Index into the participant id dictionary, as an int. */
+	static final byte DICTIONARY = 1;
+	/** Signed 16-bit value. */
+	static final byte INT16 = 2;
+	/** Signed 32-bit value. */
+	static final byte INT32 = 3;
+	/** Credits as a signed 32-bit count of {@code 1 / creditScale} credits. */
+	static final byte FIXED_POINT = 4;
+	/** One bit per row, lowest bit first. */
+	static final byte BITS = 5;
+
+	private ColumnarFormat() {
+	}
+
+	/** The type a column is stored as, or 0 if it isn't stored. */
+	static byte typeOf(OutputColumn column) {
+		switch (column) {
+		case PARTICIPANT_ID:
+			return DICTIONARY;
+		case DAY_NUM:
+			return INT16;
+		case DATE:
+			return 0;
+		case ENROLLED_COUNT:
+		case PARTICIPATED_COUNT:
+		case CANCEL_COUNT:
+		case MISSED_COUNT:
+			return INT32;
+		case RECIEVED_TREATMENT:
+			return BITS;
+		default:
+			return FIXED_POINT;
+		}
+	}
+
+	/** Bytes a column of the type takes for the rows, padded to the alignment. */
+	static long columnLength(byte type, int rowCount) {
+		long length;
+		switch (type) {
+		case INT16:
+			length = 2L * rowCount;
+			break;
+		case BITS:
+			length = (rowCount + 7L) / 8;
+			break;
+		default:
+			length = 4L * rowCount;
+		}
+		return (length + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+}
@@ -0,0 +1,209 @@
+package rep.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a file written with the columnar output format. Each stored column is
+ * memory-mapped on its own, so scanning one column, such as
+ * {@link OutputColumn#CUMULATIVE_CREDITS_EARNED}, only pages in that column.
+ */
+public class ColumnarOutputReader {
+
+	private final ExportDialect dialect;
+	private final long firstEpochDay;
+	private final int rowCount;
+	private final int creditScale;
+	private final List<String> participantIds;
+	private final List<OutputColumn> columns;
+	private final ByteBuffer[] buffers = new ByteBuffer[OutputColumn.values().length];
+
+	private ColumnarOutputReader(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			DataInputStream header = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			if (header.readInt() != ColumnarFormat.MAGIC) {
+				throw new IOException("not a columnar output file: " + path);
+			}
+			int version = header.readInt();
+			if (version != ColumnarFormat.VERSION) {
+				throw new IOException("unsupported columnar output version " + version + ": " + path);
+			}
+			int headerLength = header.readInt();
+
+			dialect = ExportDialect.valueOf(header.readUTF());
+			firstEpochDay = header.readLong();
+			rowCount = header.readInt();
+			creditScale = header.readInt();
+
+			int participantCount = header.readInt();
+			List<String> ids = new ArrayList<>(participantCount);
+			for (int p = 0; p < participantCount; p++) {
+				ids.add(header.readUTF());
+			}
+			participantIds = Collections.unmodifiableList(ids);
+
+			int columnCount = header.readInt();
+			List<OutputColumn> storedColumns = new ArrayList<>(columnCount);
+			for (int c = 0; c < columnCount; c++) {
+				String label = header.readUTF();
+				byte type = header.readByte();
+				long offset = header.readLong();
+				long length = header.readLong();
+
+				OutputColumn column = columnForLabel(label);
+				if (ColumnarFormat.typeOf(column) != type) {
+					throw new IOException("unexpected type " + type + " for column " + label + ": " + path);
+				}
+				storedColumns.add(column);
+				buffers[column.ordinal()] = channel.map(MapMode.READ_ONLY, headerLength + offset, length);
+			}
+			columns = Collections.unmodifiableList(storedColumns);
+		}
+	}
+
+	public static ColumnarOutputReader open(Path path) throws IOException {
+		return new ColumnarOutputReader(path);
+	}
+
+	private static OutputColumn columnForLabel(String label) throws IOException {
+		for (OutputColumn column : OutputColumn.values()) {
+			if (column.getLabel().equals(label)) {
+				return column;
+			}
+		}
+		throw new IOException("unknown column: " + label);
+	}
+
+	public ExportDialect getDialect() {
+		return dialect;
+	}
+
+	public LocalDate getFirstDate() {
+		return LocalDate.ofEpochDay(firstEpochDay);
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/** The participant id dictionary, sorted by id. */
+	public List<String> getParticipantIds() {
+		return participantIds;
+	}
+
+	/** The stored columns, in file order. The date is derived from the day number. */
+	public List<OutputColumn> getColumns() {
+		return columns;
+	}
+
+	public boolean hasColumn(OutputColumn column) {
+		return column == OutputColumn.DATE ? hasColumn(OutputColumn.DAY_NUM) : buffers[column.ordinal()] != null;
+	}
+
+	private ByteBuffer buffer(OutputColumn column) {
+		ByteBuffer buffer = buffers[column.ordinal()];
+		if (buffer == null) {
+			throw new IllegalArgumentException("column not stored: " + column);
+		}
+		return buffer;
+	}
+
+	/** The participant's index into {@link #getParticipantIds()}. */
+	public int getParticipantCode(int row) {
+		return buffer(OutputColumn.PARTICIPANT_ID).getInt(row * 4);
+	}
+
+	public String getParticipantId(int row) {
+		return participantIds.get(getParticipantCode(row));
+	}
+
+	public int getDay(int row) {
+		return buffer(OutputColumn.DAY_NUM).getShort(row * 2);
+	}
+
+	public LocalDate getDate(int row) {
+		return LocalDate.ofEpochDay(firstEpochDay + getDay(row) - 1);
+	}
+
+	/** Reads one of the count columns. */
+	public int getCount(OutputColumn column, int row) {
+		if (ColumnarFormat.typeOf(column) != ColumnarFormat.INT32) {
+			throw new IllegalArgumentException("not a count column: " + column);
+		}
+		return buffer(column).getInt(row * 4);
+	}
+
+	/** Reads one of the credit columns as a count of {@code 1 / getCreditScale()} credits. */
+	public int getFixedPointCredits(OutputColumn column, int row) {
+		if (ColumnarFormat.typeOf(column) != ColumnarFormat.FIXED_POINT) {
+			throw new IllegalArgumentException("not a credit column: " + column);
+		}
+		return buffer(column).getInt(row * 4);
+	}
+
+	public double getCredits(OutputColumn column, int row) {
+		return getFixedPointCredits(column, row) / (double) creditScale;
+	}
+
+	public int getCreditScale() {
+		return creditScale;
+	}
+
+	public boolean isRecievedTreatment(int row) {
+		return (buffer(OutputColumn.RECIEVED_TREATMENT).get(row >>> 3) & 1 << (row & 7)) != 0;
+	}
+
+	/** Decodes every stored column of the row. */
+	public OutputRecord getRecord(int row) {
+		OutputRecord outputRecord = new OutputRecord();
+		outputRecord.setParticipantId(getParticipantId(row));
+		outputRecord.setDay(getDay(row));
+		outputRecord.setDate(getDate(row));
+
+		for (OutputColumn column : columns) {
+			switch (column) {
+			case ENROLLED_COUNT:
+				outputRecord.setEnrolledCount(getCount(column, row));
+				break;
+			case PARTICIPATED_COUNT:
+				outputRecord.setParticipatedCount(getCount(column, row));
+				break;
+			case CANCEL_COUNT:
+				outputRecord.setCancelCount(getCount(column, row));
+				break;
+			case MISSED_COUNT:
+				outputRecord.setMissedCount(getCount(column, row));
+				break;
+			case CREDITS_EARNED:
+				outputRecord.setCreditsEarned(getCredits(column, row));
+				break;
+			case CUMULATIVE_CREDITS_EARNED:
+				outputRecord.setCumulativeCreditsEarned(getCredits(column, row));
+				break;
+			case CREDITS_MISSED:
+				outputRecord.setCreditsMissed(getCredits(column, row));
+				break;
+			case CUMULATIVE_CREDITS_MISSED:
+				outputRecord.setCumulativeCreditsMissed(getCredits(column, row));
+				break;
+			case RECIEVED_TREATMENT:
+				outputRecord.setRecievedTreatment(isRecievedTreatment(row));
+				break;
+			default:
+				break;
+			}
+		}
+		return outputRecord;
+	}
+}
@@ -0,0 +1,177 @@
+package rep.mapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes day summaries in the {@link ColumnarFormat}. The row count is known up
+ * front, one row per participant per day, so every column region is sized and
+ * memory-mapped before the first row and each value is put straight into place.
+ */
+class ColumnarOutputWriter implements Closeable {
+
+	/**
+	 * The most rows a file can hold: each column is one buffer, mapped and
+	 * indexed with an int, and the widest column takes 4 bytes a row.
+	 */
+	static final int MAX_ROWS = Integer.MAX_VALUE / 4;
+
+	private final FileChannel channel;
+	private final int rowCount;
+	private final Map<String, Integer> participantCodes = new HashMap<>();
+	private final List<OutputColumn> columns = new ArrayList<>();
+	private final MappedByteBuffer[] buffers = new MappedByteBuffer[OutputColumn.values().length];
+	private int row;
+
+	ColumnarOutputWriter(Path destPath, ExportDialect dialect, LocalDate firstDate, int dayCount,
+			List<PackedSessions> participants) throws IOException {
+		if (dayCount > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("too many days for columnar output: " + dayCount);
+		}
+		long rows = (long) participants.size() * Math.max(dayCount, 0);
+		if (rows > MAX_ROWS) {
+			throw new IllegalArgumentException("too many rows for columnar output: " + rows + ", at most " + MAX_ROWS);
+		}
+		rowCount = (int) rows;
+
+		for (OutputColumn column : dialect.getOutputColumns()) {
+			if (ColumnarFormat.typeOf(column) != 0) {
+				columns.add(column);
+			}
+		}
+
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headerBytes);
+		header.writeInt(ColumnarFormat.MAGIC);
+		header.writeInt(ColumnarFormat.VERSION);
+		header.writeInt(0); // header length, filled in below
+		header.writeUTF(dialect.name());
+		header.writeLong(firstDate.toEpochDay());
+		header.writeInt(rowCount);
+		header.writeInt(PackedSessions.CREDIT_SCALE);
+
+		header.writeInt(participants.size());
+		for (PackedSessions participant : participants) {
+			participantCodes.put(participant.getParticipantId(), participantCodes.size());
+			header.writeUTF(participant.getParticipantId());
+		}
+
+		long[] offsets = new long[columns.size()];
+		long[] lengths = new long[columns.size()];
+		long dataLength = 0;
+		header.writeInt(columns.size());
+		for (int c = 0; c < columns.size(); c++) {
+			byte type = ColumnarFormat.typeOf(columns.get(c));
+			offsets[c] = dataLength;
+			lengths[c] = ColumnarFormat.columnLength(type, rowCount);
+			dataLength += lengths[c];
+
+			header.writeUTF(columns.get(c).getLabel());
+			header.writeByte(type);
+			header.writeLong(offsets[c]);
+			header.writeLong(lengths[c]);
+		}
+		header.flush();
+
+		ByteBuffer headerBuffer = ByteBuffer.wrap(headerBytes.toByteArray());
+		int headerLength = headerBuffer.capacity();
+		headerBuffer.putInt(8, headerLength);
+
+		channel = FileChannel.open(destPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		while (headerBuffer.hasRemaining()) {
+			channel.write(headerBuffer, headerBuffer.position());
+		}
+		for (int c = 0; c < columns.size(); c++) {
+			buffers[columns.get(c).ordinal()] = channel.map(MapMode.READ_WRITE, headerLength + offsets[c], lengths[c]);
+		}
+	}
+
+	int getRowCount() {
+		return rowCount;
+	}
+
+	/** Writes one participant's day summaries as the next rows. */
+	void write(List<OutputRecord> daySummaries) throws IOException {
+		if (row + daySummaries.size() > rowCount) {
+			throw new IOException("more rows than the columnar header allows for: " + rowCount);
+		}
+		if (daySummaries.isEmpty()) {
+			return;
+		}
+
+		int participantCode = participantCodes.get(daySummaries.get(0).getParticipantId());
+		for (OutputRecord outputRecord : daySummaries) {
+			for (OutputColumn column : columns) {
+				MappedByteBuffer buffer = buffers[column.ordinal()];
+				switch (column) {
+				case PARTICIPANT_ID:
+					buffer.putInt(row * 4, participantCode);
+					break;
+				case DAY_NUM:
+					buffer.putShort(row * 2, (short) outputRecord.getDay().intValue());
+					break;
+				case ENROLLED_COUNT:
+					buffer.putInt(row * 4, Math.toIntExact(outputRecord.getEnrolledCount()));
+					break;
+				case PARTICIPATED_COUNT:
+					buffer.putInt(row * 4, Math.toIntExact(outputRecord.getParticipatedCount()));
+					break;
+				case CANCEL_COUNT:
+					buffer.putInt(row * 4, Math.toIntExact(outputRecord.getCancelCount()));
+					break;
+				case MISSED_COUNT:
+					buffer.putInt(row * 4, Math.toIntExact(outputRecord.getMissedCount()));
+					break;
+				case CREDITS_EARNED:
+					buffer.putInt(row * 4, PackedSessions.toFixedPoint(outputRecord.getCreditsEarned()));
+					break;
+				case CUMULATIVE_CREDITS_EARNED:
+					buffer.putInt(row * 4, PackedSessions.toFixedPoint(outputRecord.getCumulativeCreditsEarned()));
+					break;
+				case CREDITS_MISSED:
+					buffer.putInt(row * 4, PackedSessions.toFixedPoint(outputRecord.getCreditsMissed()));
+					break;
+				case CUMULATIVE_CREDITS_MISSED:
+					buffer.putInt(row * 4, PackedSessions.toFixedPoint(outputRecord.getCumulativeCreditsMissed()));
+					break;
+				case RECIEVED_TREATMENT:
+					if (outputRecord.isRecievedTreatment()) {
+						buffer.put(row >>> 3, (byte) (buffer.get(row >>> 3) | 1 << (row & 7)));
+					}
+					break;
+				default:
+					throw new IllegalStateException("unstored column: " + column);
+				}
+			}
+			row++;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (row != rowCount) {
+				throw new IOException("wrote " + row + " of the " + rowCount + " rows in the columnar header");
+			}
+			for (OutputColumn column : columns) {
+				buffers[column.ordinal()].force();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package rep.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens files as text, compressed or not by their name: {@code .gz} files are
+ * read and written through gzip, and {@code .zip} files are read from their
+ * first {@code .csv} entry, or their first file if none is named so. Both are
+ * streamed, so nothing is decompressed to disk. The inflater and deflater get
+ * buffers as large as the reader's and writer's, so each call moves a full
+ * buffer rather than gzip's default 512 bytes.
+ */
+public final class CompressedFiles {
+
+	static final int BUFFER_SIZE = 1 << 16;
+
+	private static final String GZIP_EXTENSION = ".gz";
+	private static final String ZIP_EXTENSION = ".zip";
+
+	private CompressedFiles() {
+	}
+
+	public static boolean isGzip(Path path) {
+		return path.getFileName().toString().toLowerCase().endsWith(GZIP_EXTENSION);
+	}
+
+	public static boolean isZip(Path path) {
+		return path.getFileName().toString().toLowerCase().endsWith(ZIP_EXTENSION);
+	}
+
+	/** Whether the file is read or written through a compressor, so it can't be memory-mapped or appended to. */
+	public static boolean isCompressed(Path path) {
+		return isGzip(path) || isZip(path);
+	}
+
+	/** The file name without a compression extension, e.g. {@code export.csv} for {@code export.csv.gz}. */
+	public static String stripCompressionExtension(String fileName) {
+		String lowerCase = fileName.toLowerCase();
+		if (lowerCase.endsWith(GZIP_EXTENSION)) {
+			return fileName.substring(0, fileName.length() - GZIP_EXTENSION.length());
+		}
+		if (lowerCase.endsWith(ZIP_EXTENSION)) {
+			return fileName.substring(0, fileName.length() - ZIP_EXTENSION.length());
+		}
+		return fileName;
+	}
+
+	/**
+	 * The path with the suffix added to its file name, before its extension and
+	 * any compression extension, e.g. {@code out - 2.csv.gz} for {@code out.csv.gz}.
+	 */
+	static String withNameSuffix(String path, String suffix) {
+		String uncompressedPath = stripCompressionExtension(path);
+		int extension = uncompressedPath.lastIndexOf('.');
+		int fileName = Math.max(uncompressedPath.lastIndexOf('/'), uncompressedPath.lastIndexOf('\\')) + 1;
+		int insertAt = extension > fileName ? extension : uncompressedPath.length();
+		return path.substring(0, insertAt) + suffix + path.substring(insertAt);
+	}
+
+	static BufferedReader newReader(Path path) throws IOException {
+		return new BufferedReader(new InputStreamReader(newInputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	static BufferedWriter newWriter(Path path) throws IOException {
+		OutputStream out = Files.newOutputStream(path);
+		if (isGzip(path)) {
+			out = new GZIPOutputStream(out, BUFFER_SIZE);
+		}
+		return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	private static InputStream newInputStream(Path path) throws IOException {
+		if (isGzip(path)) {
+			InputStream in = Files.newInputStream(path);
+			try {
+				return new GZIPInputStream(in, BUFFER_SIZE);
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+		if (isZip(path)) {
+			// a zip stream can't rewind, so without a .csv entry it is reopened at the first file
+			ZipInputStream zip = openZipEntry(path, true);
+			return zip != null ? zip : openZipEntry(path, false);
+		}
+		return Files.newInputStream(path);
+	}
+
+	/**
+	 * Opens the zip positioned at its first {@code .csv} entry, or at its first
+	 * file when csvOnly is false. Returns null if there is no such entry.
+	 */
+	private static ZipInputStream openZipEntry(Path path, boolean csvOnly) throws IOException {
+		ZipInputStream zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE),
+				StandardCharsets.UTF_8);
+		try {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				if (!entry.isDirectory() && (!csvOnly || entry.getName().toLowerCase().endsWith(".csv"))) {
+					return zip;
+				}
+			}
+		} catch (IOException e) {
+			zip.close();
+			throw e;
+		}
+		zip.close();
+		if (!csvOnly) {
+			throw new IOException("no file found in zip: " + path);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,252 @@
+package rep.mapping;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import rep.mapping.domain.Participant;
+
+/**
+ * Answers point and range questions about participants' credits and treatment
+ * over a term, such as cumulative credits earned as of a date, without
+ * generating the day summaries. Answers match the dense output for the same
+ * first and last date: sessions outside the term are ignored, dates before the
+ * first date answer as of no days, and dates after the last date as of the
+ * last date.
+ *
+ * <p>Each participant keeps only the days they had sessions on, as day offsets
+ * with running totals, so a lookup is a hash of the id and a binary search over
+ * that participant's session days.
+ */
+public final class CreditsIndex {
+
+	private static final int NEVER = Integer.MAX_VALUE;
+
+	private final LocalDate firstDate;
+	private final LocalDate lastDate;
+	private final int dayCount;
+
+	private final String[] participantIds;
+	private final Map<String, Integer> participantCodes;
+
+	// participant p's session days are days[dayStarts[p]] to days[dayStarts[p + 1] - 1], ascending
+	private final int[] dayStarts;
+	private final int[] days;
+	private final long[] cumulativeCreditsEarned;
+	private final long[] cumulativeCreditsMissed;
+	private final int[] firstTreatmentDays;
+
+	private CreditsIndex(LocalDate firstDate, LocalDate lastDate, List<PackedSessions> participants) {
+		this.firstDate = firstDate;
+		this.lastDate = lastDate;
+		this.dayCount = (int) ChronoUnit.DAYS.between(firstDate, lastDate) + 1;
+		if (dayCount < 1) {
+			throw new IllegalArgumentException("last date " + lastDate + " is before first date " + firstDate);
+		}
+
+		int participantCount = participants.size();
+		participantIds = new String[participantCount];
+		participantCodes = new HashMap<>(participantCount * 2);
+		dayStarts = new int[participantCount + 1];
+		firstTreatmentDays = new int[participantCount];
+
+		int sessionCount = 0;
+		for (PackedSessions sessions : participants) {
+			sessionCount += sessions.size();
+		}
+		// every participant's session days fit in one slot per session; trimmed once all are in
+		int[] sessionDays = new int[sessionCount];
+		long[] sessionCreditsEarned = new long[sessionCount];
+		long[] sessionCreditsMissed = new long[sessionCount];
+
+		// one participant's in-term sessions as day offset << 32 | session, reused for each participant
+		long[] byDay = new long[0];
+		long firstEpochDay = firstDate.toEpochDay();
+		int slot = 0;
+		for (int p = 0; p < participantCount; p++) {
+			PackedSessions sessions = participants.get(p);
+			participantIds[p] = sessions.getParticipantId();
+			participantCodes.put(sessions.getParticipantId(), p);
+
+			if (byDay.length < sessions.size()) {
+				byDay = new long[sessions.size()];
+			}
+			int inTerm = 0;
+			for (int i = 0; i < sessions.size(); i++) {
+				int epochDay = sessions.getEpochDay(i);
+				long dayOffset = epochDay == PackedSessions.NO_DATE ? -1 : epochDay - firstEpochDay;
+				if (dayOffset >= 0 && dayOffset < dayCount) {
+					byDay[inTerm++] = dayOffset << 32 | i;
+				}
+			}
+			Arrays.sort(byDay, 0, inTerm);
+
+			long earned = 0;
+			long missed = 0;
+			firstTreatmentDays[p] = NEVER;
+			for (int j = 0; j < inTerm; j++) {
+				int d = (int) (byDay[j] >>> 32);
+				int session = (int) byDay[j];
+				int flags = sessions.getFlags(session);
+				earned += sessions.getCreditsEarned(session);
+				missed += sessions.getCreditsMissed(session);
+				if ((flags & PackedSessions.ATTENDED) != 0 && (flags & PackedSessions.TREATED) != 0
+						&& firstTreatmentDays[p] == NEVER) {
+					firstTreatmentDays[p] = d;
+				}
+				if (j + 1 == inTerm || (int) (byDay[j + 1] >>> 32) != d) {
+					sessionDays[slot] = d;
+					sessionCreditsEarned[slot] = earned;
+					sessionCreditsMissed[slot] = missed;
+					slot++;
+				}
+			}
+			dayStarts[p + 1] = slot;
+		}
+
+		days = Arrays.copyOf(sessionDays, slot);
+		cumulativeCreditsEarned = Arrays.copyOf(sessionCreditsEarned, slot);
+		cumulativeCreditsMissed = Arrays.copyOf(sessionCreditsMissed, slot);
+	}
+
+	/** Indexes the participants over the term from firstDate to lastDate. */
+	public static CreditsIndex of(Collection<Participant> participants, LocalDate firstDate, LocalDate lastDate) {
+		List<PackedSessions> packed = new ArrayList<>(participants.size());
+		for (Participant participant : participants) {
+			packed.add(PackedSessions.of(participant));
+		}
+		return ofPacked(packed, firstDate, lastDate);
+	}
+
+	static CreditsIndex ofPacked(Collection<PackedSessions> participants, LocalDate firstDate, LocalDate lastDate) {
+		List<PackedSessions> sorted = new ArrayList<>(participants);
+		sorted.sort(Comparator.comparing(PackedSessions::getParticipantId));
+		return new CreditsIndex(firstDate, lastDate, sorted);
+	}
+
+	public LocalDate getFirstDate() {
+		return firstDate;
+	}
+
+	public LocalDate getLastDate() {
+		return lastDate;
+	}
+
+	/** Participant ids, sorted. */
+	public List<String> getParticipantIds() {
+		return Arrays.asList(participantIds.clone());
+	}
+
+	public boolean contains(String participantId) {
+		return participantCodes.containsKey(participantId);
+	}
+
+	/** Cumulative credits earned from the first date up to and including the date. */
+	public double getCumulativeCreditsEarned(String participantId, LocalDate asOf) {
+		int slot = lastSessionDay(codeOf(participantId), dayOffset(asOf));
+		return PackedSessions.fromFixedPoint(slot < 0 ? 0 : cumulativeCreditsEarned[slot]);
+	}
+
+	/** Cumulative credits missed from the first date up to and including the date. */
+	public double getCumulativeCreditsMissed(String participantId, LocalDate asOf) {
+		int slot = lastSessionDay(codeOf(participantId), dayOffset(asOf));
+		return PackedSessions.fromFixedPoint(slot < 0 ? 0 : cumulativeCreditsMissed[slot]);
+	}
+
+	/** Credits earned on the days from one date to another, both included. */
+	public double getCreditsEarned(String participantId, LocalDate from, LocalDate to) {
+		return PackedSessions.fromFixedPoint(rangeSum(cumulativeCreditsEarned, codeOf(participantId), from, to));
+	}
+
+	/** Credits missed on the days from one date to another, both included. */
+	public double getCreditsMissed(String participantId, LocalDate from, LocalDate to) {
+		return PackedSessions.fromFixedPoint(rangeSum(cumulativeCreditsMissed, codeOf(participantId), from, to));
+	}
+
+	/** Whether the participant attended a treatment session on or before the date. */
+	public boolean hasReceivedTreatment(String participantId, LocalDate asOf) {
+		return firstTreatmentDays[codeOf(participantId)] <= dayOffset(asOf);
+	}
+
+	/** The first day the participant attended a treatment session, or null if they never did within the term. */
+	public LocalDate getFirstTreatmentDate(String participantId) {
+		int firstTreatmentDay = firstTreatmentDays[codeOf(participantId)];
+		return firstTreatmentDay == NEVER ? null : firstDate.plusDays(firstTreatmentDay);
+	}
+
+	/** {@link #getCumulativeCreditsEarned(String, LocalDate)} for each participant, in order. */
+	public double[] getCumulativeCreditsEarned(List<String> participantIds, LocalDate asOf) {
+		int dayOffset = dayOffset(asOf);
+		double[] credits = new double[participantIds.size()];
+		for (int i = 0; i < credits.length; i++) {
+			int slot = lastSessionDay(codeOf(participantIds.get(i)), dayOffset);
+			credits[i] = PackedSessions.fromFixedPoint(slot < 0 ? 0 : cumulativeCreditsEarned[slot]);
+		}
+		return credits;
+	}
+
+	/** {@link #getCumulativeCreditsMissed(String, LocalDate)} for each participant, in order. */
+	public double[] getCumulativeCreditsMissed(List<String> participantIds, LocalDate asOf) {
+		int dayOffset = dayOffset(asOf);
+		double[] credits = new double[participantIds.size()];
+		for (int i = 0; i < credits.length; i++) {
+			int slot = lastSessionDay(codeOf(participantIds.get(i)), dayOffset);
+			credits[i] = PackedSessions.fromFixedPoint(slot < 0 ? 0 : cumulativeCreditsMissed[slot]);
+		}
+		return credits;
+	}
+
+	/** {@link #hasReceivedTreatment(String, LocalDate)} for each participant, in order. */
+	public boolean[] haveReceivedTreatment(List<String> participantIds, LocalDate asOf) {
+		int dayOffset = dayOffset(asOf);
+		boolean[] treated = new boolean[participantIds.size()];
+		for (int i = 0; i < treated.length; i++) {
+			treated[i] = firstTreatmentDays[codeOf(participantIds.get(i))] <= dayOffset;
+		}
+		return treated;
+	}
+
+	private int codeOf(String participantId) {
+		Integer code = participantCodes.get(participantId);
+		if (code == null) {
+			throw new IllegalArgumentException("unknown participant: " + participantId);
+		}
+		return code;
+	}
+
+	/** The date's day offset from the first date, clamped to the term; -1 for dates before it. */
+	private int dayOffset(LocalDate date) {
+		long dayOffset = ChronoUnit.DAYS.between(firstDate, date);
+		return dayOffset < 0 ? -1 : (int) Math.min(dayOffset, dayCount - 1);
+	}
+
+	/** The slot of the participant's last session day on or before the day offset, or -1 if there is none. */
+	private int lastSessionDay(int code, int dayOffset) {
+		int low = dayStarts[code];
+		int high = dayStarts[code + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (days[mid] <= dayOffset) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high >= dayStarts[code] ? high : -1;
+	}
+
+	private long rangeSum(long[] cumulative, int code, LocalDate from, LocalDate to) {
+		if (from.isAfter(to)) {
+			throw new IllegalArgumentException("range start " + from + " is after its end " + to);
+		}
+		int last = lastSessionDay(code, dayOffset(to));
+		int beforeFirst = lastSessionDay(code, dayOffset(from.minusDays(1)));
+		return (last < 0 ? 0 : cumulative[last]) - (beforeFirst < 0 ? 0 : cumulative[beforeFirst]);
+	}
+}
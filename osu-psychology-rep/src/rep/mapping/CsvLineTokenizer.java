@@ -0,0 +1,400 @@
+package rep.mapping;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Splits a single CSV line into fields in one scan and parses typed values
+ * straight out of the line, without regex splitting or per-field Strings.
+ * <p>
+ * Quoted fields are supported ({@code "Smith, Jr."}, with {@code ""} as an
+ * escaped quote) as long as they do not span lines. Dates are {@code M/d/yy} or
+ * {@code M/d/yyyy}, date-times the same followed by {@code H:mm}, and times
+ * {@code H:mm:ss}; a field in any other form parses as invalid rather than
+ * throwing.
+ */
+class CsvLineTokenizer {
+
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+
+	private static final int MAX_FAST_PATH_DIGITS = 15;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+			1e13, 1e14, 1e15 };
+
+	private static final int NOT_PARSED = -1;
+	private static final long DATE_NOT_PARSED = Long.MIN_VALUE;
+
+	/** Returned by the parse methods for a field that isn't a valid date or date-time. */
+	static final long INVALID_DATE = DATE_NOT_PARSED;
+	/** Returned by {@link #parseSecondOfDay(int)} for a field that isn't a valid time. */
+	static final int INVALID_TIME = NOT_PARSED;
+	private static final long DAYS_0000_TO_1970 = 719528L;
+
+	private final String nullValue;
+	private final boolean twoDigitYear;
+
+	private String line;
+	private int fieldCount;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private boolean[] escaped = new boolean[16];
+
+	/** A tokenizer for files this tool wrote, whose fields are only read as Strings. */
+	CsvLineTokenizer() {
+		this("", false);
+	}
+
+	/**
+	 * @param nullValue    sentinel the export uses for missing values
+	 * @param twoDigitYear whether dates are {@code M/d/yy} rather than {@code M/d/yyyy}
+	 */
+	CsvLineTokenizer(String nullValue, boolean twoDigitYear) {
+		this.nullValue = nullValue;
+		this.twoDigitYear = twoDigitYear;
+	}
+
+	void reset(String csvLine) {
+		line = csvLine;
+		fieldCount = 0;
+
+		int length = csvLine.length();
+		int pos = 0;
+		while (true) {
+			if (fieldCount == starts.length) {
+				grow();
+			}
+
+			if (pos < length && csvLine.charAt(pos) == QUOTE) {
+				int contentStart = pos + 1;
+				int contentEnd = length;
+				boolean hasEscapes = false;
+				pos = contentStart;
+				while (pos < length) {
+					if (csvLine.charAt(pos) == QUOTE) {
+						if (pos + 1 < length && csvLine.charAt(pos + 1) == QUOTE) {
+							hasEscapes = true;
+							pos += 2;
+							continue;
+						}
+						contentEnd = pos;
+						break;
+					}
+					pos++;
+				}
+				addField(contentStart, contentEnd, hasEscapes);
+				pos = csvLine.indexOf(SEPARATOR, Math.min(pos + 1, length));
+			} else {
+				int fieldEnd = csvLine.indexOf(SEPARATOR, pos);
+				addField(pos, fieldEnd < 0 ? length : fieldEnd, false);
+				pos = fieldEnd;
+			}
+
+			if (pos < 0) {
+				return;
+			}
+			pos++;
+		}
+	}
+
+	private void addField(int start, int end, boolean hasEscapes) {
+		starts[fieldCount] = start;
+		ends[fieldCount] = end;
+		escaped[fieldCount] = hasEscapes;
+		fieldCount++;
+	}
+
+	private void grow() {
+		starts = Arrays.copyOf(starts, starts.length * 2);
+		ends = Arrays.copyOf(ends, ends.length * 2);
+		escaped = Arrays.copyOf(escaped, escaped.length * 2);
+	}
+
+	int getFieldCount() {
+		return fieldCount;
+	}
+
+	private void checkIndex(int i) {
+		if (i >= fieldCount) {
+			throw new ArrayIndexOutOfBoundsException(i);
+		}
+	}
+
+	boolean isNull(int i) {
+		checkIndex(i);
+		int length = ends[i] - starts[i];
+		return !escaped[i] && length == nullValue.length() && line.regionMatches(starts[i], nullValue, 0, length);
+	}
+
+	boolean isEmpty(int i) {
+		checkIndex(i);
+		return ends[i] == starts[i];
+	}
+
+	boolean fieldEquals(int i, String value) {
+		checkIndex(i);
+		int length = ends[i] - starts[i];
+		return escaped[i] ? getString(i).equals(value)
+				: length == value.length() && line.regionMatches(starts[i], value, 0, length);
+	}
+
+	/** The field's {@link String#hashCode()}, computed without creating the String. */
+	int fieldHash(int i) {
+		checkIndex(i);
+		if (escaped[i]) {
+			return getString(i).hashCode();
+		}
+
+		int hash = 0;
+		for (int pos = starts[i]; pos < ends[i]; pos++) {
+			hash = 31 * hash + line.charAt(pos);
+		}
+		return hash;
+	}
+
+	String getString(int i) {
+		checkIndex(i);
+		String value = line.substring(starts[i], ends[i]);
+		return escaped[i] ? value.replace("\"\"", "\"") : value;
+	}
+
+	/**
+	 * Parses a number field, or returns NaN when the field isn't a decimal
+	 * number, optionally with an exponent and surrounding whitespace.
+	 */
+	double parseDouble(int i) {
+		checkIndex(i);
+		double value = parseFastDouble(i);
+		if (!Double.isNaN(value) || !isDecimal(starts[i], ends[i])) {
+			return value;
+		}
+		return Double.parseDouble(line.substring(starts[i], ends[i]));
+	}
+
+	/** Plain decimals of up to 15 digits, or NaN for anything the fast path doesn't handle. */
+	private double parseFastDouble(int i) {
+		int pos = starts[i];
+		int end = ends[i];
+
+		boolean negative = false;
+		if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+			negative = line.charAt(pos) == '-';
+			pos++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for (; pos < end; pos++) {
+			char c = line.charAt(pos);
+			if (c >= '0' && c <= '9') {
+				if (++digits > MAX_FAST_PATH_DIGITS) {
+					return Double.NaN;
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+			} else if (c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			} else {
+				return Double.NaN;
+			}
+		}
+		if (digits == 0 || escaped[i]) {
+			return Double.NaN;
+		}
+
+		// both operands are exact, so the single division is correctly rounded
+		double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+		return negative ? -value : value;
+	}
+
+	/** Whether the range is {@code [sign]digits[.digits][e[sign]digits]}, with optional surrounding whitespace. */
+	private boolean isDecimal(int start, int end) {
+		while (start < end && line.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+
+		int pos = start;
+		if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+			pos++;
+		}
+		int digits = 0;
+		boolean point = false;
+		for (; pos < end; pos++) {
+			char c = line.charAt(pos);
+			if (c >= '0' && c <= '9') {
+				digits++;
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+		if (pos < end && (line.charAt(pos) == 'e' || line.charAt(pos) == 'E')) {
+			pos++;
+			if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+				pos++;
+			}
+			int exponentStart = pos;
+			while (pos < end && line.charAt(pos) >= '0' && line.charAt(pos) <= '9') {
+				pos++;
+			}
+			if (pos == exponentStart) {
+				return false;
+			}
+		}
+		return pos == end;
+	}
+
+	/**
+	 * Parses a date field to its epoch day, or returns {@link #INVALID_DATE}. A
+	 * day past the end of its month is invalid unless clampDay is set, in which
+	 * case it becomes the last day of the month, as {@code DateTimeFormatter}'s
+	 * default resolver does.
+	 */
+	long parseEpochDay(int i, boolean clampDay) {
+		checkIndex(i);
+		return parseDate(starts[i], ends[i], clampDay);
+	}
+
+	/**
+	 * Parses a date-time field to minutes since the epoch, or returns
+	 * {@link #INVALID_DATE} when the field isn't {@code date H:mm}.
+	 */
+	long parseEpochMinute(int i) {
+		checkIndex(i);
+		int start = starts[i];
+		int end = ends[i];
+		int space = escaped[i] ? -1 : line.indexOf(' ', start);
+		if (space <= start || space >= end) {
+			return INVALID_DATE;
+		}
+
+		long epochDay = parseDate(start, space, false);
+		int minuteOfDay = parseClock(space + 1, end, false);
+		return epochDay == DATE_NOT_PARSED || minuteOfDay == NOT_PARSED ? INVALID_DATE
+				: epochDay * 24 * 60 + minuteOfDay;
+	}
+
+	/**
+	 * Parses an {@code H:mm:ss} time field, with optional surrounding
+	 * whitespace, to its second of day, or returns {@link #INVALID_TIME}.
+	 */
+	int parseSecondOfDay(int i) {
+		checkIndex(i);
+		int start = starts[i];
+		int end = ends[i];
+		while (start < end && line.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return escaped[i] ? INVALID_TIME : parseClock(start, end, true);
+	}
+
+	private long parseDate(int start, int end, boolean clampDay) {
+		int firstSlash = line.indexOf('/', start);
+		int secondSlash = firstSlash < 0 ? -1 : line.indexOf('/', firstSlash + 1);
+		if (firstSlash < 0 || secondSlash < 0 || secondSlash >= end) {
+			return DATE_NOT_PARSED;
+		}
+
+		int month = parseDigits(start, firstSlash, 1, 2);
+		int day = parseDigits(firstSlash + 1, secondSlash, 1, 2);
+		int year = twoDigitYear ? parseDigits(secondSlash + 1, end, 2, 2) : parseDigits(secondSlash + 1, end, 4, 4);
+		if (month == NOT_PARSED || day == NOT_PARSED || year == NOT_PARSED) {
+			return DATE_NOT_PARSED;
+		}
+		if (twoDigitYear) {
+			year += 2000;
+		}
+		if (month < 1 || month > 12 || day < 1 || day > 31) {
+			return DATE_NOT_PARSED;
+		}
+		if (day > lengthOfMonth(year, month)) {
+			if (!clampDay) {
+				return DATE_NOT_PARSED;
+			}
+			day = lengthOfMonth(year, month);
+		}
+
+		return toEpochDay(year, month, day);
+	}
+
+	private static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return isLeapYear(year) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/** Same arithmetic as {@link LocalDate#toEpochDay()}, for non-negative years. */
+	private static long toEpochDay(int year, int month, int day) {
+		long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+		total += (367 * month - 362) / 12 + day - 1;
+		if (month > 2) {
+			total -= isLeapYear(year) ? 1 : 2;
+		}
+		return total - DAYS_0000_TO_1970;
+	}
+
+	/** Parses {@code H:mm} to a minute of day, or {@code H:mm:ss} to a second of day. */
+	private int parseClock(int start, int end, boolean withSeconds) {
+		int firstColon = line.indexOf(':', start);
+		if (firstColon < 0 || firstColon >= end) {
+			return NOT_PARSED;
+		}
+		int minuteEnd = withSeconds ? firstColon + 3 : end;
+		if (minuteEnd > end || withSeconds && (minuteEnd == end || line.charAt(minuteEnd) != ':')) {
+			return NOT_PARSED;
+		}
+
+		int hour = parseDigits(start, firstColon, 1, 2);
+		int minute = parseDigits(firstColon + 1, minuteEnd, 2, 2);
+		int second = withSeconds ? parseDigits(minuteEnd + 1, end, 2, 2) : 0;
+		if (hour == NOT_PARSED || minute == NOT_PARSED || second == NOT_PARSED || hour > 23 || minute > 59
+				|| second > 59) {
+			return NOT_PARSED;
+		}
+
+		int minuteOfDay = hour * 60 + minute;
+		return withSeconds ? minuteOfDay * 60 + second : minuteOfDay;
+	}
+
+	private int parseDigits(int start, int end, int minDigits, int maxDigits) {
+		int length = end - start;
+		if (length < minDigits || length > maxDigits) {
+			return NOT_PARSED;
+		}
+
+		int value = 0;
+		for (int pos = start; pos < end; pos++) {
+			char c = line.charAt(pos);
+			if (c < '0' || c > '9') {
+				return NOT_PARSED;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+}
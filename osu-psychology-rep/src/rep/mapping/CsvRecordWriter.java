@@ -0,0 +1,172 @@
+package rep.mapping;
+
+import java.io.CharArrayWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+
+/**
+ * Writes CSV records field by field straight into an underlying writer.
+ * Numbers and dates are rendered digit by digit into a scratch buffer, matching
+ * {@code String.valueOf} output, so the common values need no temporary Strings.
+ */
+class CsvRecordWriter implements Closeable {
+
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final Writer writer;
+	private final char[] scratch = new char[20];
+	private boolean firstField = true;
+	private long recordCount;
+
+	CsvRecordWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	private void separate() throws IOException {
+		if (!firstField) {
+			writer.write(SEPARATOR);
+		}
+		firstField = false;
+	}
+
+	/** Writes the value as {@link #escape(String)} renders it. */
+	CsvRecordWriter field(String value) throws IOException {
+		separate();
+		writer.write(escape(String.valueOf(value)));
+		return this;
+	}
+
+	CsvRecordWriter field(long value) throws IOException {
+		separate();
+		writeLong(value);
+		return this;
+	}
+
+	CsvRecordWriter field(boolean value) throws IOException {
+		separate();
+		writer.write(value ? '1' : '0');
+		return this;
+	}
+
+	/** Writes the value as {@link Double#toString(double)} would. */
+	CsvRecordWriter field(double value) throws IOException {
+		separate();
+
+		double quarters = value * 4;
+		if (Math.abs(value) < 1e7 && quarters == Math.rint(quarters)
+				&& !(value == 0 && Double.doubleToRawLongBits(value) != 0)) {
+			// whole and quarter values print exactly, so Double.toString can be skipped
+			long scaled = (long) Math.abs(quarters);
+			if (value < 0) {
+				writer.write('-');
+			}
+			writeLong(scaled / 4);
+			switch ((int) (scaled % 4)) {
+			case 0:
+				writer.write(".0");
+				break;
+			case 1:
+				writer.write(".25");
+				break;
+			case 2:
+				writer.write(".5");
+				break;
+			default:
+				writer.write(".75");
+			}
+		} else {
+			writer.write(Double.toString(value));
+		}
+		return this;
+	}
+
+	/** Writes the date as {@link LocalDate#toString()} would. */
+	CsvRecordWriter field(LocalDate value) throws IOException {
+		separate();
+
+		if (value == null || value.getYear() < 0 || value.getYear() > 9999) {
+			writer.write(String.valueOf(value));
+			return this;
+		}
+
+		writePadded(value.getYear(), 4);
+		writer.write('-');
+		writePadded(value.getMonthValue(), 2);
+		writer.write('-');
+		writePadded(value.getDayOfMonth(), 2);
+		return this;
+	}
+
+	/**
+	 * The value as a field: quoted, with {@code ""} for each quote, if it
+	 * contains a separator, quote or line break, so it reads back as one field,
+	 * and unchanged otherwise.
+	 */
+	static String escape(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r') {
+				return QUOTE + value.replace("\"", "\"\"") + QUOTE;
+			}
+		}
+		return value;
+	}
+
+	void endRecord() throws IOException {
+		writer.write(LINE_SEPARATOR);
+		firstField = true;
+		recordCount++;
+	}
+
+	/** Records ended so far, including pre-formatted lines. */
+	long getRecordCount() {
+		return recordCount;
+	}
+
+	/** Writes a pre-formatted line, such as a header. */
+	void line(String line) throws IOException {
+		writer.write(line);
+		endRecord();
+	}
+
+	/** Writes records already formatted by another writer, counting them as this writer's own. */
+	void formatted(CharArrayWriter records, long formattedCount) throws IOException {
+		records.writeTo(writer);
+		recordCount += formattedCount;
+	}
+
+	private void writeLong(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			writer.write(Long.toString(value));
+			return;
+		}
+		if (value < 0) {
+			writer.write('-');
+			value = -value;
+		}
+
+		int pos = scratch.length;
+		do {
+			scratch[--pos] = (char) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		writer.write(scratch, pos, scratch.length - pos);
+	}
+
+	private void writePadded(int value, int width) throws IOException {
+		for (int pos = width - 1; pos >= 0; pos--) {
+			scratch[pos] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		writer.write(scratch, 0, width);
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -0,0 +1,29 @@
+package rep.mapping;
+
+import lombok.Data;
+
+@Data
+public class CumulativeState {
+    private long cumulativeCreditsEarned; // fixed-point, see PackedSessions.CREDIT_SCALE
+    private long cumulativeCreditsMissed; // fixed-point, see PackedSessions.CREDIT_SCALE
+    private boolean recievedTreatment;
+
+    /**
+     * Folds in the sessions dated within [fromEpochDay, toEpochDay], the same way
+     * the day summaries accumulate them.
+     */
+    void advance(PackedSessions sessions, long fromEpochDay, long toEpochDay) {
+        for (int i = 0; i < sessions.size(); i++) {
+            int epochDay = sessions.getEpochDay(i);
+            if (epochDay == PackedSessions.NO_DATE || epochDay < fromEpochDay || epochDay > toEpochDay) {
+                continue;
+            }
+
+            int flags = sessions.getFlags(i);
+            cumulativeCreditsEarned += sessions.getCreditsEarned(i);
+            cumulativeCreditsMissed += sessions.getCreditsMissed(i);
+            recievedTreatment = recievedTreatment
+                    || (flags & PackedSessions.ATTENDED) != 0 && (flags & PackedSessions.TREATED) != 0;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package rep.mapping;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A participant's per-day counts and fixed-point credits over a span of days.
+ * The sessions are bucketed and totalled once for the whole span, and each
+ * analysis window inside it is summarized from these totals, restarting the
+ * cumulative values at the window's first date. The main output is the span
+ * summarized as one window.
+ */
+class DailyTotals {
+
+	private final String participantId;
+	private final LocalDate firstDate;
+	private final int dayCount;
+
+	private final int[] enrolledCounts;
+	private final int[] participatedCounts;
+	private final int[] cancelCounts;
+	private final int[] missedCounts;
+	private final long[] creditsEarned;
+	private final long[] creditsMissed;
+	private final boolean[] treated;
+
+	DailyTotals(PackedSessions participant, LocalDate firstDate, int dayCount) {
+		this.participantId = participant.getParticipantId();
+		this.firstDate = firstDate;
+		this.dayCount = dayCount;
+
+		enrolledCounts = new int[dayCount];
+		participatedCounts = new int[dayCount];
+		cancelCounts = new int[dayCount];
+		missedCounts = new int[dayCount];
+		creditsEarned = new long[dayCount];
+		creditsMissed = new long[dayCount];
+		treated = new boolean[dayCount];
+
+		SessionDayIndex sessionIndex = new SessionDayIndex(participant, firstDate, dayCount);
+		for (int d = 0; d < dayCount; d++) {
+			for (int i = sessionIndex.start(d); i < sessionIndex.end(d); i++) {
+				int session = sessionIndex.get(i);
+				int flags = participant.getFlags(session);
+
+				enrolledCounts[d] += (flags & PackedSessions.ENROLLED) != 0 ? 1 : 0;
+				if ((flags & PackedSessions.ATTENDED) != 0) {
+					participatedCounts[d]++;
+					treated[d] = treated[d] || (flags & PackedSessions.TREATED) != 0;
+				}
+				cancelCounts[d] += (flags & PackedSessions.CANCELLED) != 0 ? 1 : 0;
+				missedCounts[d] += (flags & PackedSessions.MISSED) != 0 ? 1 : 0;
+				creditsEarned[d] += participant.getCreditsEarned(session);
+				creditsMissed[d] += participant.getCreditsMissed(session);
+			}
+		}
+	}
+
+	/** The window's day summaries, the same as a run over just the window's dates would generate. */
+	List<OutputRecord> summarize(LocalDate windowFirstDate, LocalDate windowLastDate) {
+		return summarize(windowFirstDate, windowLastDate, 1, new CumulativeState());
+	}
+
+	/**
+	 * The day summaries for windowFirstDate to windowLastDate, numbered from
+	 * firstDayNum and continuing from the cumulative state as of the day before,
+	 * leaving the state as of windowLastDate.
+	 */
+	List<OutputRecord> summarize(LocalDate windowFirstDate, LocalDate windowLastDate, int firstDayNum,
+			CumulativeState state) {
+		int windowDayCount = (int) ChronoUnit.DAYS.between(windowFirstDate, windowLastDate) + 1;
+		int firstOffset = (int) ChronoUnit.DAYS.between(firstDate, windowFirstDate);
+		if (firstOffset < 0 || firstOffset + windowDayCount > dayCount) {
+			throw new IllegalArgumentException("window " + windowFirstDate + " to " + windowLastDate
+					+ " is outside the totalled days");
+		}
+
+		List<OutputRecord> daySummaries = new ArrayList<>(Math.max(windowDayCount, 0));
+		long cumulativeCreditsEarned = state.getCumulativeCreditsEarned();
+		long cumulativeCreditsMissed = state.getCumulativeCreditsMissed();
+		boolean hasRecievedTreatment = state.isRecievedTreatment();
+
+		for (int dayOffset = 0; dayOffset < windowDayCount; dayOffset++) {
+			int d = firstOffset + dayOffset;
+			OutputRecord outputRecord = new OutputRecord();
+
+			outputRecord.setDate(windowFirstDate.plusDays(dayOffset));
+			outputRecord.setDay(firstDayNum + dayOffset);
+			outputRecord.setParticipantId(participantId);
+
+			outputRecord.setEnrolledCount(enrolledCounts[d]);
+			outputRecord.setParticipatedCount(participatedCounts[d]);
+
+			outputRecord.setCreditsEarned(PackedSessions.fromFixedPoint(creditsEarned[d]));
+			cumulativeCreditsEarned += creditsEarned[d];
+			outputRecord.setCumulativeCreditsEarned(PackedSessions.fromFixedPoint(cumulativeCreditsEarned));
+
+			outputRecord.setCancelCount(cancelCounts[d]);
+			outputRecord.setMissedCount(missedCounts[d]);
+			outputRecord.setCreditsMissed(PackedSessions.fromFixedPoint(creditsMissed[d]));
+			cumulativeCreditsMissed += creditsMissed[d];
+			outputRecord.setCumulativeCreditsMissed(PackedSessions.fromFixedPoint(cumulativeCreditsMissed));
+
+			hasRecievedTreatment = hasRecievedTreatment || treated[d];
+			outputRecord.setRecievedTreatment(hasRecievedTreatment);
+
+			daySummaries.add(outputRecord);
+		}
+
+		state.setCumulativeCreditsEarned(cumulativeCreditsEarned);
+		state.setCumulativeCreditsMissed(cumulativeCreditsMissed);
+		state.setRecievedTreatment(hasRecievedTreatment);
+		return daySummaries;
+	}
+}
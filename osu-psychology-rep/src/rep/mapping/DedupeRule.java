@@ -0,0 +1,39 @@
+package rep.mapping;
+
+/**
+ * Which of several rows for the same session is kept when duplicates are
+ * collapsed. Where a rule ranks two rows equally, the later row wins, as a
+ * re-export lists a superseding row after the one it supersedes.
+ */
+public enum DedupeRule {
+	/** The row furthest down the export. */
+	LAST_ROW,
+	/** The row furthest up the export. */
+	FIRST_ROW,
+	/** The row enrolled latest; rows with no readable enrollment date-time lose to those with one. */
+	LATEST_ENROLLMENT,
+	/** A row that wasn't cancelled over one that was, such as a re-enrollment after a cancel. */
+	NOT_CANCELLED;
+
+	/** Looks a rule up by name, ignoring case, with {@code -} for {@code _}, e.g. {@code latest-enrollment}. */
+	public static DedupeRule forName(String name) {
+		return valueOf(name.toUpperCase().replace('-', '_'));
+	}
+
+	/** The row's rank under this rule; a row ranked at least as high as the kept row replaces it. */
+	long rank(CsvLineTokenizer fields, ExportDialect dialect, int flags) {
+		switch (this) {
+		case LATEST_ENROLLMENT:
+			int enrollColumn = dialect.getEnrollDateTimeColumn();
+			return fields.isNull(enrollColumn) ? Long.MIN_VALUE : fields.parseEpochMinute(enrollColumn);
+		case NOT_CANCELLED:
+			return (flags & PackedSessions.CANCELLED) != 0 ? 0 : 1;
+		default:
+			return 0;
+		}
+	}
+
+	boolean replaces(long rank, long keptRank) {
+		return this != FIRST_ROW && rank >= keptRank;
+	}
+}
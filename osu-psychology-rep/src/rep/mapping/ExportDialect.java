@@ -0,0 +1,147 @@
+package rep.mapping;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Describes one REP export layout: which column holds each field, how missing
+ * values and dates are written, which session code marks the treatment, and
+ * which columns the restructured output has.
+ */
+public enum ExportDialect {
+	/**
+	 * email, lastName, debit, creditEarned, cancel, enroll, experiment,
+	 * removeExpDelete, code, startTime, endTime, sessionDate
+	 */
+	ORIGINAL("\\N", false, null, //
+			0, ExportDialect.NO_COLUMN, 3, 4, 5, 6, 8, 11, 9, //
+			OutputColumn.PARTICIPANT_ID, OutputColumn.DAY_NUM, OutputColumn.DATE, OutputColumn.ENROLLED_COUNT,
+			OutputColumn.PARTICIPATED_COUNT, OutputColumn.CREDITS_EARNED, OutputColumn.CUMULATIVE_CREDITS_EARNED),
+	/**
+	 * id, absence, credit, cancel, enroll, experiment, code, sessionDate,
+	 * sessionTime
+	 */
+	JAVIER("NULL", true, "SRF1R1", //
+			0, 1, 2, 3, 4, 5, 6, 7, 8, //
+			OutputColumn.values());
+
+	/** Column index of a field the layout doesn't have. */
+	public static final int NO_COLUMN = -1;
+
+	private final String nullValue;
+	private final boolean twoDigitYear;
+	private final String treatmentSessionCode;
+
+	private final int idColumn;
+	private final int creditMissedColumn;
+	private final int creditEarnedColumn;
+	private final int cancelDateTimeColumn;
+	private final int enrollDateTimeColumn;
+	private final int experimentIdColumn;
+	private final int sessionCodeColumn;
+	private final int sessionDateColumn;
+	private final int startTimeColumn;
+
+	private final int fieldCount;
+
+	private final List<OutputColumn> outputColumns;
+	private final String outputHeader;
+
+	ExportDialect(String nullValue, boolean twoDigitYear, String treatmentSessionCode, int idColumn,
+			int creditMissedColumn, int creditEarnedColumn, int cancelDateTimeColumn, int enrollDateTimeColumn,
+			int experimentIdColumn, int sessionCodeColumn, int sessionDateColumn, int startTimeColumn,
+			OutputColumn... outputColumns) {
+		this.nullValue = nullValue;
+		this.twoDigitYear = twoDigitYear;
+		this.treatmentSessionCode = treatmentSessionCode;
+		this.idColumn = idColumn;
+		this.creditMissedColumn = creditMissedColumn;
+		this.creditEarnedColumn = creditEarnedColumn;
+		this.cancelDateTimeColumn = cancelDateTimeColumn;
+		this.enrollDateTimeColumn = enrollDateTimeColumn;
+		this.experimentIdColumn = experimentIdColumn;
+		this.sessionCodeColumn = sessionCodeColumn;
+		this.sessionDateColumn = sessionDateColumn;
+		this.startTimeColumn = startTimeColumn;
+		this.fieldCount = IntStream.of(idColumn, creditMissedColumn, creditEarnedColumn, cancelDateTimeColumn,
+				enrollDateTimeColumn, experimentIdColumn, sessionCodeColumn, sessionDateColumn, startTimeColumn).max()
+				.getAsInt() + 1;
+		this.outputColumns = Arrays.asList(outputColumns);
+		this.outputHeader = this.outputColumns.stream().map(OutputColumn::getLabel).collect(Collectors.joining(","));
+	}
+
+	/** Looks a dialect up by name, ignoring case. */
+	public static ExportDialect forName(String name) {
+		return valueOf(name.toUpperCase());
+	}
+
+	/** The sentinel the export uses for missing values. */
+	public String getNullValue() {
+		return nullValue;
+	}
+
+	/** Whether dates are {@code M/d/yy} rather than {@code M/d/yyyy}. */
+	public boolean isTwoDigitYear() {
+		return twoDigitYear;
+	}
+
+	/** The session code of the treatment session, or null if the layout has none. */
+	public String getTreatmentSessionCode() {
+		return treatmentSessionCode;
+	}
+
+	public int getIdColumn() {
+		return idColumn;
+	}
+
+	public int getCreditMissedColumn() {
+		return creditMissedColumn;
+	}
+
+	public int getCreditEarnedColumn() {
+		return creditEarnedColumn;
+	}
+
+	public int getCancelDateTimeColumn() {
+		return cancelDateTimeColumn;
+	}
+
+	public int getEnrollDateTimeColumn() {
+		return enrollDateTimeColumn;
+	}
+
+	public int getExperimentIdColumn() {
+		return experimentIdColumn;
+	}
+
+	public int getSessionCodeColumn() {
+		return sessionCodeColumn;
+	}
+
+	public int getSessionDateColumn() {
+		return sessionDateColumn;
+	}
+
+	public int getStartTimeColumn() {
+		return startTimeColumn;
+	}
+
+	/** Fields in a row of the export, up to the last one the mapper reads. */
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	public List<OutputColumn> getOutputColumns() {
+		return outputColumns;
+	}
+
+	public String getOutputHeader() {
+		return outputHeader;
+	}
+
+	CsvLineTokenizer newTokenizer() {
+		return new CsvLineTokenizer(nullValue, twoDigitYear);
+	}
+}
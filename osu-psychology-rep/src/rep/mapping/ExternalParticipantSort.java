@@ -0,0 +1,217 @@
+package rep.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Groups rows by participant within a heap budget. Rows are packed into a
+ * {@link ParticipantDictionary} as usual, but once its estimated size passes
+ * the budget its participants are written, sorted by id, to a binary run file
+ * and a fresh dictionary is started. Iterating merges the runs k ways and
+ * yields one participant at a time, sorted by id, with each participant's
+ * sessions in file order, so only one participant per run is held at once.
+ * Without a spill, iterating just sorts the dictionary in memory.
+ */
+class ExternalParticipantSort implements Iterable<PackedSessions>, Closeable {
+
+	// rough heap cost of a participant (sessions object, arrays, id, dictionary slot) and of a session row
+	private static final long PARTICIPANT_BYTES = 320;
+	private static final long ROW_BYTES = 26;
+	private static final int RUN_BUFFER_SIZE = 1 << 16;
+
+	private static final Comparator<PackedSessions> BY_ID = Comparator.comparing(PackedSessions::getParticipantId);
+
+	private final long budgetBytes;
+	private final Path spillDir;
+	private final List<Path> runs = new ArrayList<>();
+	private final List<RunReader> openRuns = new ArrayList<>();
+
+	private ParticipantDictionary participants = new ParticipantDictionary();
+	private long rowsInMemory;
+	private long spilledBytes;
+	private Path runDir;
+
+	/**
+	 * @param budgetBytes heap the grouped rows may take before they are spilled
+	 * @param spillDir    where the run files go, in a temporary directory removed on close
+	 */
+	ExternalParticipantSort(long budgetBytes, Path spillDir) {
+		this.budgetBytes = budgetBytes;
+		this.spillDir = spillDir;
+	}
+
+	/** The dictionary the next row is packed into; it is replaced after a spill. */
+	ParticipantDictionary getParticipants() {
+		return participants;
+	}
+
+	/** Counts a row packed into the dictionary, spilling it if it is now over budget. */
+	void rowPacked() throws IOException {
+		rowsInMemory++;
+		if (participants.size() * PARTICIPANT_BYTES + rowsInMemory * ROW_BYTES > budgetBytes) {
+			spill();
+		}
+	}
+
+	/** Spills what is left once the last row is packed, if anything was spilled before. */
+	void finish() throws IOException {
+		if (!runs.isEmpty() && participants.size() > 0) {
+			spill();
+		}
+	}
+
+	int getRunCount() {
+		return runs.size();
+	}
+
+	long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	private void spill() throws IOException {
+		if (runDir == null) {
+			runDir = Files.createTempDirectory(spillDir, "rep-spill");
+		}
+		Path run = runDir.resolve("run-" + runs.size() + ".bin");
+
+		List<PackedSessions> sorted = new ArrayList<>(participants.values());
+		sorted.sort(BY_ID);
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE))) {
+			out.writeInt(sorted.size());
+			for (PackedSessions sessions : sorted) {
+				out.writeUTF(sessions.getParticipantId());
+				out.writeInt(sessions.size());
+				for (int i = 0; i < sessions.size(); i++) {
+					out.writeInt(sessions.getEpochDay(i));
+					out.writeInt(sessions.getCreditsEarned(i));
+					out.writeInt(sessions.getCreditsMissed(i));
+					out.writeByte(sessions.getFlags(i));
+				}
+			}
+		}
+
+		runs.add(run);
+		spilledBytes += Files.size(run);
+		participants = new ParticipantDictionary();
+		rowsInMemory = 0;
+	}
+
+	@Override
+	public Iterator<PackedSessions> iterator() {
+		if (runs.isEmpty()) {
+			List<PackedSessions> sorted = new ArrayList<>(participants.values());
+			sorted.sort(BY_ID);
+			return sorted.iterator();
+		}
+		try {
+			return new RunMerger();
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to read spilled runs", e);
+		}
+	}
+
+	/** Closes any runs still being merged and deletes the run files. */
+	@Override
+	public void close() throws IOException {
+		for (RunReader reader : openRuns) {
+			reader.in.close();
+		}
+		for (Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+		if (runDir != null) {
+			Files.deleteIfExists(runDir);
+		}
+	}
+
+	/** Merges the runs, taking a participant found in several runs from each in run order, which is file order. */
+	private final class RunMerger implements Iterator<PackedSessions> {
+		private final PriorityQueue<RunReader> heads = new PriorityQueue<>(
+				Comparator.comparing((RunReader x) -> x.next.getParticipantId()).thenComparingInt(x -> x.index));
+
+		RunMerger() throws IOException {
+			for (int r = 0; r < runs.size(); r++) {
+				RunReader reader = new RunReader(runs.get(r), r);
+				openRuns.add(reader);
+				if (reader.advance()) {
+					heads.add(reader);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !heads.isEmpty();
+		}
+
+		@Override
+		public PackedSessions next() {
+			if (heads.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+
+			try {
+				RunReader first = heads.poll();
+				PackedSessions merged = first.next;
+				requeue(first);
+				while (!heads.isEmpty() && heads.peek().next.getParticipantId().equals(merged.getParticipantId())) {
+					RunReader reader = heads.poll();
+					merged.addAll(reader.next);
+					requeue(reader);
+				}
+				return merged;
+			} catch (IOException e) {
+				throw new IllegalStateException("unable to read spilled runs", e);
+			}
+		}
+
+		private void requeue(RunReader reader) throws IOException {
+			if (reader.advance()) {
+				heads.add(reader);
+			}
+		}
+	}
+
+	private static final class RunReader {
+		private final DataInputStream in;
+		private final int index;
+		private int remaining;
+		private PackedSessions next;
+
+		RunReader(Path run, int index) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+			this.index = index;
+			this.remaining = in.readInt();
+		}
+
+		/** Reads the run's next participant, or closes the run and returns false at its end. */
+		boolean advance() throws IOException {
+			if (remaining == 0) {
+				in.close();
+				next = null;
+				return false;
+			}
+			remaining--;
+
+			next = new PackedSessions(in.readUTF());
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				next.add(in.readInt(), in.readInt(), in.readInt(), in.readByte());
+			}
+			return true;
+		}
+	}
+}
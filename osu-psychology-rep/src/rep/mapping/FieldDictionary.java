@@ -0,0 +1,91 @@
+package rep.mapping;
+
+import java.util.Arrays;
+
+/**
+ * Maps the distinct values of a field to dense int codes, in first-seen order.
+ * Values are hashed and compared straight out of the tokenized line, so a
+ * String is only created the first time a value is seen rather than once per
+ * row.
+ */
+class FieldDictionary {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private String[] values = new String[INITIAL_CAPACITY / 2];
+	private int[] hashes = new int[INITIAL_CAPACITY / 2];
+	private int[] table = new int[INITIAL_CAPACITY]; // code + 1, or 0 for an empty slot
+	private int size;
+
+	/** Returns the code of the field's value, adding the value if it is new. */
+	int codeOf(CsvLineTokenizer fields, int column) {
+		int hash = fields.fieldHash(column);
+		int mask = table.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			int entry = table[slot];
+			if (entry == 0) {
+				return add(fields.getString(column), hash, slot);
+			}
+			int code = entry - 1;
+			if (hashes[code] == hash && fields.fieldEquals(column, values[code])) {
+				return code;
+			}
+		}
+	}
+
+	/** Returns the code of the value, adding the value if it is new. */
+	int codeOf(String value) {
+		int hash = value.hashCode();
+		int mask = table.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			int entry = table[slot];
+			if (entry == 0) {
+				return add(value, hash, slot);
+			}
+			int code = entry - 1;
+			if (hashes[code] == hash && values[code].equals(value)) {
+				return code;
+			}
+		}
+	}
+
+	private int add(String value, int hash, int slot) {
+		int code = size++;
+		if (code == values.length) {
+			values = Arrays.copyOf(values, code * 2);
+			hashes = Arrays.copyOf(hashes, code * 2);
+		}
+		values[code] = value;
+		hashes[code] = hash;
+		table[slot] = code + 1;
+
+		if (size * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+		return code;
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		int mask = capacity - 1;
+		for (int code = 0; code < size; code++) {
+			int slot = spread(hashes[code]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = code + 1;
+		}
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	int size() {
+		return size;
+	}
+
+	String get(int code) {
+		return values[code];
+	}
+}
@@ -0,0 +1,102 @@
+package rep.mapping;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Splits a file into newline-aligned chunks that can be memory-mapped and read
+ * line by line independently of each other.
+ */
+class MappedLineReader {
+
+	/** Largest chunk that fits in a single mapping. */
+	static final long MAX_CHUNK_BYTES = 1L << 30;
+
+	private static final int BOUNDARY_SCAN_BYTES = 1 << 12;
+
+	private MappedLineReader() {
+	}
+
+	/**
+	 * Returns chunk boundaries {@code b[0] = 0 < ... <= b[n] = size}, where every
+	 * inner boundary is the first byte after a newline. Adjacent boundaries may
+	 * be equal when lines are longer than the nominal chunk size.
+	 */
+	static long[] chunkBoundaries(FileChannel channel, int minChunks) throws IOException {
+		long size = channel.size();
+		int chunkCount = (int) Math.max(minChunks, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+		long nominalChunkBytes = Math.max(1, size / chunkCount);
+
+		long[] boundaries = new long[chunkCount + 1];
+		boundaries[chunkCount] = size;
+		for (int c = 1; c < chunkCount; c++) {
+			long nominal = Math.max(boundaries[c - 1], c * nominalChunkBytes);
+			boundaries[c] = nextLineStart(channel, nominal, size);
+		}
+		return boundaries;
+	}
+
+	private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+		if (position == 0) {
+			return 0;
+		}
+
+		ByteBuffer window = ByteBuffer.allocate(BOUNDARY_SCAN_BYTES);
+		long pos = position - 1; // a line starting exactly at position is kept whole
+		while (pos < size) {
+			window.clear();
+			int read = channel.read(window, pos);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (window.get(i) == '\n') {
+					return pos + i + 1;
+				}
+			}
+			pos += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Decodes each line of the chunk as UTF-8 and hands it to the consumer,
+	 * dropping line terminators the way {@code BufferedReader.readLine} does.
+	 */
+	static void forEachLine(ByteBuffer chunk, boolean skipFirstLine, Consumer<String> lineConsumer) {
+		byte[] line = new byte[256];
+		int length = 0;
+		boolean skip = skipFirstLine;
+
+		int limit = chunk.limit();
+		for (int i = chunk.position(); i < limit; i++) {
+			byte b = chunk.get(i);
+			if (b == '\n') {
+				if (!skip) {
+					lineConsumer.accept(decode(line, length));
+				}
+				skip = false;
+				length = 0;
+			} else {
+				if (length == line.length) {
+					line = Arrays.copyOf(line, length * 2);
+				}
+				line[length++] = b;
+			}
+		}
+		if (length > 0 && !skip) {
+			lineConsumer.accept(decode(line, length));
+		}
+	}
+
+	private static String decode(byte[] line, int length) {
+		if (length > 0 && line[length - 1] == '\r') {
+			length--;
+		}
+		return new String(line, 0, length, StandardCharsets.UTF_8);
+	}
+}
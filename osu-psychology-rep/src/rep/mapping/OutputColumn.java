@@ -0,0 +1,94 @@
+package rep.mapping;
+
+import java.io.IOException;
+
+/**
+ * A column of the restructured output, with its header label and how its value
+ * is written from an {@link OutputRecord}.
+ */
+public enum OutputColumn {
+	PARTICIPANT_ID("participantId") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getParticipantId());
+		}
+	},
+	DAY_NUM("dayNum") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getDay());
+		}
+	},
+	DATE("date") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getDate());
+		}
+	},
+	ENROLLED_COUNT("enrolledCount") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getEnrolledCount());
+		}
+	},
+	PARTICIPATED_COUNT("participatedCount") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getParticipatedCount());
+		}
+	},
+	CREDITS_EARNED("creditsEarned") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getCreditsEarned());
+		}
+	},
+	CUMULATIVE_CREDITS_EARNED("cumulativeCreditsEarned") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getCumulativeCreditsEarned());
+		}
+	},
+	RECIEVED_TREATMENT("recievedTreatment") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.isRecievedTreatment());
+		}
+	},
+	CANCEL_COUNT("cancelCount") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getCancelCount());
+		}
+	},
+	MISSED_COUNT("missedCount") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getMissedCount());
+		}
+	},
+	CREDITS_MISSED("creditsMissed") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getCreditsMissed());
+		}
+	},
+	CUMULATIVE_CREDITS_MISSED("cumulativeCreditsMissed") {
+		@Override
+		void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+			writer.field(outputRecord.getCumulativeCreditsMissed());
+		}
+	};
+
+	private final String label;
+
+	OutputColumn(String label) {
+		this.label = label;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	abstract void write(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException;
+}
@@ -0,0 +1,186 @@
+package rep.mapping;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rep.mapping.domain.Participant;
+import rep.mapping.domain.Session;
+
+/**
+ * A participant's sessions held as parallel primitive arrays: the session's
+ * epoch day, credits earned and missed in fixed-point thousandths, and a flags
+ * bitset. This is what the summaries are computed from; {@link Session} and
+ * {@link Participant} objects are only built on request as a view.
+ */
+class PackedSessions {
+
+	static final int ENROLLED = 1;
+	static final int CANCELLED = 1 << 1;
+	static final int ATTENDED = 1 << 2;
+	static final int MISSED = 1 << 3;
+	static final int TREATED = 1 << 4;
+	static final int HAS_CREDITS_EARNED = 1 << 5;
+	static final int HAS_CREDITS_MISSED = 1 << 6;
+
+	static final int NO_DATE = Integer.MIN_VALUE;
+	static final int CREDIT_SCALE = 1000;
+	private static final double THOUSANDTHS_TOLERANCE = 1e-6;
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final String participantId;
+
+	private int size;
+	private int[] epochDays = new int[INITIAL_CAPACITY];
+	private int[] creditsEarned = new int[INITIAL_CAPACITY];
+	private int[] creditsMissed = new int[INITIAL_CAPACITY];
+	private byte[] flags = new byte[INITIAL_CAPACITY];
+
+	PackedSessions(String participantId) {
+		this.participantId = participantId;
+	}
+
+	/** Whether the value is a number small enough to hold in fixed point. */
+	static boolean isCredits(double credits) {
+		return Math.abs(credits) * CREDIT_SCALE <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Whether the value is a whole number of thousandths, to within the error
+	 * of parsing it, so {@link #toFixedPoint(double)} holds it without rounding.
+	 */
+	static boolean isThousandths(double credits) {
+		double scaled = credits * CREDIT_SCALE;
+		return Math.abs(scaled - Math.rint(scaled)) <= THOUSANDTHS_TOLERANCE;
+	}
+
+	/**
+	 * Whether the value is a whole number of eighths. Such values, and their sums,
+	 * are exact both as doubles and in thousandths, so totals print the same as
+	 * summing the raw doubles; 0.1 + 0.2, say, prints 0.3 rather than
+	 * 0.30000000000000004.
+	 */
+	static boolean isEighths(double credits) {
+		double eighths = credits * 8;
+		return eighths == Math.rint(eighths);
+	}
+
+	static int toFixedPoint(double credits) {
+		return (int) Math.round(credits * CREDIT_SCALE);
+	}
+
+	static double fromFixedPoint(long credits) {
+		return credits / (double) CREDIT_SCALE;
+	}
+
+	void add(int epochDay, int fixedCreditsEarned, int fixedCreditsMissed, int sessionFlags) {
+		ensureCapacity(size + 1);
+
+		epochDays[size] = epochDay;
+		creditsEarned[size] = fixedCreditsEarned;
+		creditsMissed[size] = fixedCreditsMissed;
+		flags[size] = (byte) sessionFlags;
+		size++;
+	}
+
+	/** Overwrites session i, such as with a row that supersedes it. */
+	void set(int i, int epochDay, int fixedCreditsEarned, int fixedCreditsMissed, int sessionFlags) {
+		epochDays[i] = epochDay;
+		creditsEarned[i] = fixedCreditsEarned;
+		creditsMissed[i] = fixedCreditsMissed;
+		flags[i] = (byte) sessionFlags;
+	}
+
+	/**
+	 * Appends another partial set of sessions for the same participant, keeping
+	 * their order after this one's.
+	 */
+	PackedSessions addAll(PackedSessions other) {
+		ensureCapacity(size + other.size);
+
+		System.arraycopy(other.epochDays, 0, epochDays, size, other.size);
+		System.arraycopy(other.creditsEarned, 0, creditsEarned, size, other.size);
+		System.arraycopy(other.creditsMissed, 0, creditsMissed, size, other.size);
+		System.arraycopy(other.flags, 0, flags, size, other.size);
+		size += other.size;
+
+		return this;
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity > epochDays.length) {
+			int capacity = Math.max(minCapacity, epochDays.length * 2);
+			epochDays = Arrays.copyOf(epochDays, capacity);
+			creditsEarned = Arrays.copyOf(creditsEarned, capacity);
+			creditsMissed = Arrays.copyOf(creditsMissed, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+		}
+	}
+
+	String getParticipantId() {
+		return participantId;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getEpochDay(int i) {
+		return epochDays[i];
+	}
+
+	int getCreditsEarned(int i) {
+		return creditsEarned[i];
+	}
+
+	int getCreditsMissed(int i) {
+		return creditsMissed[i];
+	}
+
+	int getFlags(int i) {
+		return flags[i];
+	}
+
+	Session toSession(int i) {
+		Session session = new Session();
+		int sessionFlags = flags[i];
+
+		session.setSessionDate(epochDays[i] == NO_DATE ? null : LocalDate.ofEpochDay(epochDays[i]));
+		session.setCreditsEarned((sessionFlags & HAS_CREDITS_EARNED) != 0 ? fromFixedPoint(creditsEarned[i]) : null);
+		session.setEnrolled((sessionFlags & ENROLLED) != 0);
+		session.setCancelled((sessionFlags & CANCELLED) != 0);
+		session.setAttended((sessionFlags & ATTENDED) != 0);
+
+		session.setMissed((sessionFlags & MISSED) != 0);
+		session.setCreditsMissed((sessionFlags & HAS_CREDITS_MISSED) != 0 ? fromFixedPoint(creditsMissed[i]) : null);
+		session.setTreated((sessionFlags & TREATED) != 0);
+
+		return session;
+	}
+
+	/** Packs a participant's sessions, the reverse of {@link #toParticipant()}. */
+	static PackedSessions of(Participant participant) {
+		PackedSessions packed = new PackedSessions(participant.getId());
+		for (Session session : participant.getSessions()) {
+			int sessionFlags = (session.isEnrolled() ? ENROLLED : 0) | (session.isCancelled() ? CANCELLED : 0)
+					| (session.isAttended() ? ATTENDED : 0) | (session.isMissed() ? MISSED : 0)
+					| (session.isTreated() ? TREATED : 0)
+					| (session.getCreditsEarned() != null ? HAS_CREDITS_EARNED : 0)
+					| (session.getCreditsMissed() != null ? HAS_CREDITS_MISSED : 0);
+			packed.add(session.getSessionDate() == null ? NO_DATE : (int) session.getSessionDate().toEpochDay(),
+					session.getCreditsEarned() == null ? 0 : toFixedPoint(session.getCreditsEarned()),
+					session.getCreditsMissed() == null ? 0 : toFixedPoint(session.getCreditsMissed()), sessionFlags);
+		}
+		return packed;
+	}
+
+	Participant toParticipant() {
+		List<Session> sessions = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			sessions.add(toSession(i));
+		}
+		return new Participant(participantId, sessions);
+	}
+}
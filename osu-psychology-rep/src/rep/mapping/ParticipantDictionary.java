@@ -0,0 +1,53 @@
+package rep.mapping;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps participant ids to dense int codes, in first-seen order, each with the
+ * participant's packed sessions. Ids go through a {@link FieldDictionary}, so
+ * the id String is only created the first time a participant is seen rather
+ * than once per row.
+ */
+class ParticipantDictionary {
+
+	private final FieldDictionary ids = new FieldDictionary();
+	private final List<PackedSessions> participants = new ArrayList<>();
+
+	/** Returns the sessions of the participant whose id is in the field, adding the participant if it is new. */
+	PackedSessions sessionsFor(CsvLineTokenizer fields, int column) {
+		return participants.get(codeOf(fields, column));
+	}
+
+	/** Returns the code of the participant whose id is in the field, adding the participant if it is new. */
+	int codeOf(CsvLineTokenizer fields, int column) {
+		int code = ids.codeOf(fields, column);
+		if (code == participants.size()) {
+			participants.add(new PackedSessions(ids.get(code)));
+		}
+		return code;
+	}
+
+	int size() {
+		return participants.size();
+	}
+
+	PackedSessions get(int code) {
+		return participants.get(code);
+	}
+
+	/** Every participant's sessions, in code order. */
+	List<PackedSessions> values() {
+		return participants;
+	}
+
+	Map<String, PackedSessions> toMap() {
+		Map<String, PackedSessions> participantIdToSessionsMap = new HashMap<>();
+		for (PackedSessions sessions : participants) {
+			participantIdToSessionsMap.put(sessions.getParticipantId(), sessions);
+		}
+		return participantIdToSessionsMap;
+	}
+}
@@ -0,0 +1,114 @@
+package rep.mapping;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a file's lines on a background thread and hands them over in batches
+ * through a bounded queue, so reading and decompressing overlap with whatever
+ * the caller does with the lines. When the queue is full the reader waits, so
+ * at most the queue's capacity of batches is held in memory.
+ */
+class PipelinedLineReader implements Closeable {
+
+	private static final List<String> END = Collections.emptyList();
+
+	private final BlockingQueue<List<String>> batches;
+	private final int batchSize;
+	private final Thread reader;
+	private volatile Throwable failure;
+
+	private List<String> batch = Collections.emptyList();
+	private int next;
+	private boolean ended;
+
+	/** Starts reading the file, opened as {@link CompressedFiles#newReader(Path)} opens it. */
+	PipelinedLineReader(Path path, int batchSize, int queueCapacity) {
+		this.batches = new ArrayBlockingQueue<>(queueCapacity);
+		this.batchSize = batchSize;
+		this.reader = new Thread(() -> read(path), "rep-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Reads every line into the queue, then END. Any failure is kept for the
+	 * consumer to throw once it reaches END, so it never waits on a reader that
+	 * has died.
+	 */
+	private void read(Path path) {
+		boolean closed = false;
+		try (BufferedReader lines = CompressedFiles.newReader(path)) {
+			List<String> nextBatch = new ArrayList<>(batchSize);
+			String line;
+			while ((line = lines.readLine()) != null) {
+				nextBatch.add(line);
+				if (nextBatch.size() == batchSize) {
+					batches.put(nextBatch);
+					nextBatch = new ArrayList<>(batchSize);
+				}
+			}
+			if (!nextBatch.isEmpty()) {
+				batches.put(nextBatch);
+			}
+		} catch (InterruptedException e) {
+			// closed before the end was read, so nothing waits for the rest
+			closed = true;
+		} catch (Throwable e) {
+			failure = e;
+		} finally {
+			if (closed) {
+				batches.offer(END);
+			} else {
+				putEnd();
+			}
+		}
+	}
+
+	private void putEnd() {
+		try {
+			batches.put(END);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Returns the next line, or null at the end of the file, as {@link BufferedReader#readLine()} does. */
+	String readLine() throws IOException {
+		while (next == batch.size()) {
+			if (ended) {
+				return null;
+			}
+			try {
+				batch = batches.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while reading source file", e);
+			}
+			next = 0;
+			if (batch == END) {
+				ended = true;
+				if (failure instanceof IOException) {
+					throw (IOException) failure;
+				}
+				if (failure != null) {
+					throw new IllegalStateException("unable to read source file", failure);
+				}
+			}
+		}
+		return batch.get(next++);
+	}
+
+	/** Stops the reader thread if it hasn't reached the end. */
+	@Override
+	public void close() {
+		reader.interrupt();
+	}
+}
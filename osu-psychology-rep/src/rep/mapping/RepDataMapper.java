@@ -0,0 +1,1348 @@
+package rep.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import rep.mapping.domain.Participant;
+import rep.mapping.domain.Session;
+
+public class RepDataMapper {
+
+	private final String sourceRepDataFilePathStr;
+	private final String destRepDataFilePathStr;
+
+	private final ExportDialect dialect;
+
+	private final LocalDate firstDate;
+	private final LocalDate lastDate;
+
+	private final RepMapperOptions options;
+
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+	private static final int SUMMARY_WINDOW_PER_THREAD = 4;
+	private static final int PIPELINE_BATCH_SIZE = 1024;
+	private static final int PIPELINE_QUEUED_BATCHES = 16;
+	private static final int FORMATTED_ROW_CHARS = 64;
+
+	private final CsvLineTokenizer tokenizer;
+
+	// set for the length of a run that writes cohort curves; added to as participants are summarized
+	private CohortCurves cohortCurves;
+
+	public RepDataMapper(String srcPath, String destPath, LocalDate startDate, LocalDate endDate) {
+		this(srcPath, destPath, startDate, endDate, new RepMapperOptions());
+	}
+
+	public RepDataMapper(String srcPath, String destPath, LocalDate startDate, LocalDate endDate, RepMapperOptions mapperOptions) {
+		this(srcPath, destPath, startDate, endDate, mapperOptions.getDialect(), mapperOptions);
+	}
+
+	public RepDataMapper(String srcPath, String destPath, LocalDate startDate, LocalDate endDate,
+			ExportDialect exportDialect, RepMapperOptions mapperOptions) {
+		sourceRepDataFilePathStr = srcPath;
+		destRepDataFilePathStr = destPath;
+		firstDate = startDate;
+		lastDate = endDate;
+		dialect = exportDialect;
+		options = mapperOptions;
+		tokenizer = dialect.newTokenizer();
+	}
+
+	
+	private List<String> readSourceData(Path srcDataPath) {
+		try {
+			List<String> originalRecords = CompressedFiles.isCompressed(srcDataPath) ? readCompressedLines(srcDataPath)
+					: Files.readAllLines(srcDataPath);
+			if (!originalRecords.isEmpty()) {
+				originalRecords.remove(0); // ignore labels
+			}
+			return originalRecords;
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to read source file", e);
+		}
+	}
+
+	private List<String> readCompressedLines(Path srcDataPath) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = CompressedFiles.newReader(srcDataPath)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Reads, parses and groups the source file one line at a time, so only the
+	 * grouped sessions are held in memory rather than every raw line and record.
+	 */
+	private List<PackedSessions> streamToParticipants(Path srcDataPath, AggregateCube cube, RowIssues issues,
+			SessionDeduper deduper) {
+		ParticipantDictionary participants = new ParticipantDictionary();
+
+		try {
+			forEachSourceLine(srcDataPath, x -> packRecord(x, tokenizer, participants, cube, issues, deduper));
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to read source file", e);
+		}
+
+		return sortById(participants.values());
+	}
+
+	/**
+	 * Hands each line of the source after the labels to the consumer. When
+	 * pipelined, the lines are read on a background thread, so reading and
+	 * decompressing overlap with parsing.
+	 */
+	private void forEachSourceLine(Path srcDataPath, LineConsumer consumer) throws IOException {
+		if (options.isPipelined()) {
+			try (PipelinedLineReader reader = new PipelinedLineReader(srcDataPath, PIPELINE_BATCH_SIZE,
+					PIPELINE_QUEUED_BATCHES)) {
+				reader.readLine(); // ignore labels
+
+				String line;
+				while ((line = reader.readLine()) != null) {
+					consumer.accept(line);
+				}
+			}
+			return;
+		}
+
+		try (BufferedReader reader = CompressedFiles.newReader(srcDataPath)) {
+			reader.readLine(); // ignore labels
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				consumer.accept(line);
+			}
+		}
+	}
+
+	private interface LineConsumer {
+		void accept(String line) throws IOException;
+	}
+
+	/**
+	 * Memory-maps the source file and parses newline-aligned chunks of it in
+	 * parallel, each into its own partial participant map. The partial maps are
+	 * merged in chunk order, so every participant's sessions keep file order,
+	 * and each chunk's row issues are renumbered to follow the chunks before it.
+	 */
+	private List<PackedSessions> mapChunksToParticipants(Path srcDataPath, AggregateCube cube, RowIssues issues) {
+		int threads = options.getIngestThreads() > 0 ? options.getIngestThreads()
+				: Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Map<String, PackedSessions> participantIdToSessionsMap = new HashMap<>();
+
+		try (FileChannel channel = FileChannel.open(srcDataPath, StandardOpenOption.READ)) {
+			long[] boundaries = MappedLineReader.chunkBoundaries(channel, threads);
+
+			List<Future<ParticipantDictionary>> partialMaps = new ArrayList<>();
+			List<AggregateCube> chunkCubes = new ArrayList<>();
+			List<RowIssues> chunkIssues = new ArrayList<>();
+			for (int c = 0; c + 1 < boundaries.length; c++) {
+				if (boundaries[c] == boundaries[c + 1]) {
+					continue;
+				}
+				MappedByteBuffer chunk = channel.map(MapMode.READ_ONLY, boundaries[c], boundaries[c + 1] - boundaries[c]);
+				boolean isFirstChunk = boundaries[c] == 0;
+				AggregateCube chunkCube = cube == null ? null : new AggregateCube(firstDate, lastDate);
+				chunkCubes.add(chunkCube);
+				RowIssues issuesInChunk = issues == null ? null : new RowIssues(issues.isKeepingRejectedRows(), 0);
+				chunkIssues.add(issuesInChunk);
+				partialMaps.add(pool.submit(() -> packChunk(chunk, isFirstChunk, chunkCube, issuesInChunk)));
+			}
+
+			for (Future<ParticipantDictionary> partialMap : partialMaps) {
+				for (PackedSessions sessions : partialMap.get().values()) {
+					participantIdToSessionsMap.merge(sessions.getParticipantId(), sessions, PackedSessions::addAll);
+				}
+			}
+			if (cube != null) {
+				chunkCubes.forEach(cube::addAll);
+			}
+			if (issues != null) {
+				chunkIssues.forEach(issues::addAll);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to read source file", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while reading source file", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("unable to parse source file", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		return sortById(participantIdToSessionsMap.values());
+	}
+
+	private ParticipantDictionary packChunk(MappedByteBuffer chunk, boolean isFirstChunk, AggregateCube cube,
+			RowIssues issues) {
+		ParticipantDictionary participants = new ParticipantDictionary();
+		CsvLineTokenizer fields = dialect.newTokenizer();
+
+		// only the first chunk starts with the labels
+		MappedLineReader.forEachLine(chunk, isFirstChunk,
+				x -> packRecord(x, fields, participants, cube, issues, null));
+
+		return participants;
+	}
+
+	List<OutputRecord> generateDaySummaries(PackedSessions paticipant) {
+		return generateDaySummaries(paticipant, firstDate, lastDate, new CumulativeState());
+	}
+
+	/**
+	 * Generates the summaries for fromDate to toDate, continuing from the
+	 * cumulative state as of the day before fromDate and leaving the state as of
+	 * toDate.
+	 */
+	private List<OutputRecord> generateDaySummaries(PackedSessions paticipant, LocalDate fromDate, LocalDate toDate,
+			CumulativeState state) {
+		int dayCount = (int) ChronoUnit.DAYS.between(fromDate, toDate) + 1;
+		int firstDayNum = (int) ChronoUnit.DAYS.between(firstDate, fromDate) + 1;
+		return new DailyTotals(paticipant, fromDate, Math.max(dayCount, 0)).summarize(fromDate, toDate, firstDayNum,
+				state);
+	}
+
+	/**
+	 * Generates the day summaries for every participant and writes them as they
+	 * are produced, in participant order. With more than one summary thread a
+	 * bounded window of participants is summarized ahead on a worker pool while
+	 * finished participants are written in submission order, so the output is
+	 * identical to the sequential path.
+	 */
+	private void writeSummaries(Iterable<PackedSessions> participants, SummarySink sink, StageMetrics summarizeStage,
+			StageMetrics writeStage) throws IOException {
+		int threads = options.getSummaryThreads() > 1 ? options.getSummaryThreads() : 0;
+		forEachInOrder(participants, threads, x -> summarize(x, summarizeStage), x -> write(x, sink, writeStage));
+	}
+
+	/**
+	 * Applies the work to every participant and hands the results to the sink
+	 * in participant order. With threads, the work runs on a pool of that size,
+	 * a bounded window of participants ahead of the sink, while the calling
+	 * thread runs the sink; with none, both run on the calling thread.
+	 */
+	private <T> void forEachInOrder(Iterable<PackedSessions> participants, int threads, ParticipantWork<T> work,
+			ResultSink<T> sink) throws IOException {
+		if (threads == 0) {
+			for (PackedSessions participant : participants) {
+				sink.accept(work.apply(participant));
+			}
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			int window = threads * SUMMARY_WINDOW_PER_THREAD;
+			Deque<Future<T>> inFlight = new ArrayDeque<>(window);
+
+			for (PackedSessions participant : participants) {
+				if (inFlight.size() == window) {
+					sink.accept(inFlight.poll().get());
+				}
+				inFlight.add(pool.submit(() -> work.apply(participant)));
+			}
+			while (!inFlight.isEmpty()) {
+				sink.accept(inFlight.poll().get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while summarizing participants", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("unable to summarize participants", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private List<OutputRecord> summarize(PackedSessions participant, StageMetrics summarizeStage) {
+		long startAllocatedBytes = RunReport.threadAllocatedBytes();
+		long startNanos = System.nanoTime();
+		List<OutputRecord> daySummaries = generateDaySummaries(participant);
+		if (cohortCurves != null) {
+			cohortCurves.add(daySummaries);
+		}
+		summarizeStage.record(System.nanoTime() - startNanos, RunReport.allocatedSince(startAllocatedBytes), 1,
+				daySummaries.size());
+		return daySummaries;
+	}
+
+	private void write(List<OutputRecord> daySummaries, SummarySink sink, StageMetrics writeStage)
+			throws IOException {
+		long startAllocatedBytes = RunReport.threadAllocatedBytes();
+		long startNanos = System.nanoTime();
+		sink.accept(daySummaries);
+		writeStage.record(System.nanoTime() - startNanos, RunReport.allocatedSince(startAllocatedBytes),
+				daySummaries.size(), 0);
+	}
+
+	private interface ParticipantWork<T> {
+		T apply(PackedSessions participant) throws IOException;
+	}
+
+	private interface ResultSink<T> {
+		void accept(T result) throws IOException;
+	}
+
+	/**
+	 * Pipelined CSV output: a pool summarizes participants and formats their
+	 * rows as text, while the calling thread writes the formatted text in
+	 * participant order, so summarizing, formatting and writing all overlap.
+	 * Only a bounded window of formatted participants waits to be written.
+	 */
+	private void writeSummariesPipelined(Iterable<PackedSessions> participants, CsvRecordWriter writer,
+			StageMetrics summarizeStage, StageMetrics formatStage, StageMetrics writeStage) throws IOException {
+		forEachInOrder(participants, Math.max(1, options.getSummaryThreads()),
+				x -> format(summarize(x, summarizeStage), formatStage), x -> {
+					long startNanos = System.nanoTime();
+					writer.formatted(x.text, x.recordCount);
+					writeStage.record(System.nanoTime() - startNanos, 0, x.recordCount, 0);
+				});
+	}
+
+	private FormattedRows format(List<OutputRecord> daySummaries, StageMetrics formatStage) throws IOException {
+		long startAllocatedBytes = RunReport.threadAllocatedBytes();
+		long startNanos = System.nanoTime();
+		CharArrayWriter text = new CharArrayWriter(daySummaries.size() * FORMATTED_ROW_CHARS);
+		CsvRecordWriter writer = new CsvRecordWriter(text);
+		writeOutputs(daySummaries, writer);
+		formatStage.record(System.nanoTime() - startNanos, RunReport.allocatedSince(startAllocatedBytes),
+				daySummaries.size(), writer.getRecordCount());
+		return new FormattedRows(text, writer.getRecordCount());
+	}
+
+	/** A participant's rows, formatted as CSV text ready to be written. */
+	private static final class FormattedRows {
+		private final CharArrayWriter text;
+		private final long recordCount;
+
+		private FormattedRows(CharArrayWriter text, long recordCount) {
+			this.text = text;
+			this.recordCount = recordCount;
+		}
+	}
+
+	/** Receives each participant's day summaries, in participant order. */
+	private interface SummarySink {
+		void accept(List<OutputRecord> daySummaries) throws IOException;
+	}
+
+	private void writeOutputs(List<OutputRecord> outputRecords, CsvRecordWriter writer) throws IOException {
+		if (options.isRunLengthOutput()) {
+			writeRuns(outputRecords, writer);
+			return;
+		}
+		for (OutputRecord outputRecord : outputRecords) {
+			writeOutput(outputRecord, writer);
+		}
+	}
+
+	/**
+	 * Writes each run of consecutive days whose values, apart from the day number
+	 * and date, are identical as the run's first day followed by its length in
+	 * days. {@link RunLengthExpander} turns the runs back into the dense rows.
+	 */
+	private void writeRuns(List<OutputRecord> outputRecords, CsvRecordWriter writer) throws IOException {
+		int runStart = 0;
+		for (int i = 1; i <= outputRecords.size(); i++) {
+			if (i == outputRecords.size() || !sameValues(outputRecords.get(runStart), outputRecords.get(i))) {
+				writeColumns(outputRecords.get(runStart), writer);
+				writer.field(i - runStart);
+				writer.endRecord();
+				runStart = i;
+			}
+		}
+	}
+
+	private boolean sameValues(OutputRecord outputRecord, OutputRecord other) {
+		return outputRecord.getEnrolledCount() == other.getEnrolledCount()
+				&& outputRecord.getParticipatedCount() == other.getParticipatedCount()
+				&& outputRecord.getCancelCount() == other.getCancelCount()
+				&& outputRecord.getMissedCount() == other.getMissedCount()
+				&& outputRecord.isRecievedTreatment() == other.isRecievedTreatment()
+				&& Double.compare(outputRecord.getCreditsEarned(), other.getCreditsEarned()) == 0
+				&& Double.compare(outputRecord.getCumulativeCreditsEarned(), other.getCumulativeCreditsEarned()) == 0
+				&& Double.compare(outputRecord.getCreditsMissed(), other.getCreditsMissed()) == 0
+				&& Double.compare(outputRecord.getCumulativeCreditsMissed(), other.getCumulativeCreditsMissed()) == 0;
+	}
+
+	/**
+	 * Parses one export line straight into the participant's packed sessions,
+	 * reading only the fields the summaries depend on.
+	 *
+	 * <p>Validates the row without throwing: a row that can't be mapped is counted
+	 * and kept in the issues under its {@link RowIssue} and left out, and a row
+	 * that can be repaired is mapped with the repair applied and counted.
+	 *
+	 * @param cube   where the row's totals are also added per experiment and
+	 *               session code, or null when no cube is wanted
+	 * @param issues where the row's issues are recorded, or null when they are
+	 *               not wanted
+	 * @param deduper collapses the row into an earlier row for the same session,
+	 *               or null when every row is kept
+	 */
+	private void packRecord(String originalRecordStr, CsvLineTokenizer fields, ParticipantDictionary participants,
+			AggregateCube cube, RowIssues issues, SessionDeduper deduper) {
+		long lineNumber = issues == null ? 0 : issues.nextLine();
+		if (originalRecordStr.trim().isEmpty()) {
+			reject(issues, RowIssue.BLANK_LINE, lineNumber, originalRecordStr);
+			return;
+		}
+
+		fields.reset(originalRecordStr);
+		if (fields.getFieldCount() < dialect.getFieldCount()) {
+			reject(issues, RowIssue.TOO_FEW_FIELDS, lineNumber, originalRecordStr);
+			return;
+		}
+		int idColumn = dialect.getIdColumn();
+		if (fields.isEmpty(idColumn) || fields.isNull(idColumn)) {
+			reject(issues, RowIssue.MISSING_PARTICIPANT_ID, lineNumber, originalRecordStr);
+			return;
+		}
+
+		int flags = 0;
+		boolean emptyAsNull = false;
+		boolean creditRounded = false;
+		boolean inexactCredit = false;
+
+		int creditsMissed = 0;
+		int creditMissedColumn = dialect.getCreditMissedColumn();
+		if (creditMissedColumn != ExportDialect.NO_COLUMN && fields.isEmpty(creditMissedColumn)) {
+			emptyAsNull = true;
+		} else if (creditMissedColumn != ExportDialect.NO_COLUMN && !fields.isNull(creditMissedColumn)) {
+			double creditMissed = fields.parseDouble(creditMissedColumn);
+			if (!PackedSessions.isCredits(creditMissed)) {
+				reject(issues, RowIssue.BAD_CREDIT_MISSED, lineNumber, originalRecordStr);
+				return;
+			}
+			if (!PackedSessions.isEighths(creditMissed)) {
+				if (PackedSessions.isThousandths(creditMissed)) {
+					inexactCredit = true;
+				} else {
+					creditRounded = true;
+				}
+			}
+			creditsMissed = PackedSessions.toFixedPoint(creditMissed);
+			flags |= PackedSessions.HAS_CREDITS_MISSED | (creditMissed > 0 ? PackedSessions.MISSED : 0);
+		}
+		int creditsEarned = 0;
+		int creditEarnedColumn = dialect.getCreditEarnedColumn();
+		if (fields.isEmpty(creditEarnedColumn)) {
+			emptyAsNull = true;
+		} else if (!fields.isNull(creditEarnedColumn)) {
+			double creditEarned = fields.parseDouble(creditEarnedColumn);
+			if (!PackedSessions.isCredits(creditEarned)) {
+				reject(issues, RowIssue.BAD_CREDIT_EARNED, lineNumber, originalRecordStr);
+				return;
+			}
+			if (!PackedSessions.isEighths(creditEarned)) {
+				if (PackedSessions.isThousandths(creditEarned)) {
+					inexactCredit = true;
+				} else {
+					creditRounded = true;
+				}
+			}
+			creditsEarned = PackedSessions.toFixedPoint(creditEarned);
+			flags |= PackedSessions.HAS_CREDITS_EARNED | (creditEarned > 0 ? PackedSessions.ATTENDED : 0);
+		}
+		int cancelDateTimeColumn = dialect.getCancelDateTimeColumn();
+		if (fields.isEmpty(cancelDateTimeColumn)) {
+			emptyAsNull = true;
+		} else if (!fields.isNull(cancelDateTimeColumn)) {
+			if (fields.parseEpochMinute(cancelDateTimeColumn) == CsvLineTokenizer.INVALID_DATE) {
+				reject(issues, RowIssue.BAD_CANCEL_DATE_TIME, lineNumber, originalRecordStr);
+				return;
+			}
+			flags |= PackedSessions.CANCELLED;
+		}
+		int enrollDateTimeColumn = dialect.getEnrollDateTimeColumn();
+		if (fields.isEmpty(enrollDateTimeColumn)) {
+			emptyAsNull = true;
+		} else if (!fields.isNull(enrollDateTimeColumn)) {
+			if (fields.parseEpochMinute(enrollDateTimeColumn) == CsvLineTokenizer.INVALID_DATE) {
+				reject(issues, RowIssue.BAD_ENROLL_DATE_TIME, lineNumber, originalRecordStr);
+				return;
+			}
+			flags |= PackedSessions.ENROLLED;
+		}
+		if (dialect.getTreatmentSessionCode() != null
+				&& fields.fieldEquals(dialect.getSessionCodeColumn(), dialect.getTreatmentSessionCode())) {
+			flags |= PackedSessions.TREATED;
+		}
+
+		int epochDay = PackedSessions.NO_DATE;
+		boolean dayClamped = false;
+		int sessionDateColumn = dialect.getSessionDateColumn();
+		if (fields.isEmpty(sessionDateColumn)) {
+			emptyAsNull = true;
+		} else if (!fields.isNull(sessionDateColumn)) {
+			long sessionDay = fields.parseEpochDay(sessionDateColumn, false);
+			if (sessionDay == CsvLineTokenizer.INVALID_DATE) {
+				// the day past the end of the month that the old parser quietly clamped
+				sessionDay = fields.parseEpochDay(sessionDateColumn, true);
+				dayClamped = true;
+			}
+			if (sessionDay == CsvLineTokenizer.INVALID_DATE) {
+				reject(issues, RowIssue.BAD_SESSION_DATE, lineNumber, originalRecordStr);
+				return;
+			}
+			epochDay = (int) sessionDay;
+		}
+
+		if (issues != null) {
+			if (fields.getFieldCount() > dialect.getFieldCount()) {
+				issues.repaired(RowIssue.EXTRA_FIELDS);
+			}
+			if (emptyAsNull) {
+				issues.repaired(RowIssue.EMPTY_AS_NULL);
+			}
+			if (dayClamped) {
+				issues.repaired(RowIssue.DAY_CLAMPED);
+			}
+			if (creditRounded) {
+				issues.repaired(RowIssue.CREDIT_ROUNDED);
+			}
+			if (inexactCredit) {
+				issues.repaired(RowIssue.INEXACT_CREDIT);
+			}
+		}
+
+		if (deduper != null) {
+			int participantCode = participants.codeOf(fields, idColumn);
+			PackedSessions sessions = participants.get(participantCode);
+			int startTime = deduper.startTimeOf(fields);
+			if (issues != null && SessionDeduper.isMalformed(startTime)) {
+				issues.repaired(RowIssue.BAD_START_TIME);
+			}
+			int kept = deduper.keep(fields, participantCode, epochDay, startTime, flags, sessions.size());
+			if (kept == SessionDeduper.COLLAPSED) {
+				return;
+			}
+			if (kept != SessionDeduper.NEW_SESSION) {
+				if (cube != null) {
+					cube.remove(fields, dialect, sessions.getEpochDay(kept), sessions.getFlags(kept),
+							sessions.getCreditsEarned(kept), sessions.getCreditsMissed(kept));
+				}
+				sessions.set(kept, epochDay, creditsEarned, creditsMissed, flags);
+			} else {
+				sessions.add(epochDay, creditsEarned, creditsMissed, flags);
+			}
+		} else {
+			participants.sessionsFor(fields, idColumn).add(epochDay, creditsEarned, creditsMissed, flags);
+		}
+		if (cube != null) {
+			cube.add(fields, dialect, epochDay, flags, creditsEarned, creditsMissed);
+		}
+	}
+
+	private static void reject(RowIssues issues, RowIssue issue, long lineNumber, String originalRecordStr) {
+		if (issues != null) {
+			issues.rejected(issue, lineNumber, originalRecordStr);
+		}
+	}
+	
+	void writeOutput(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+		writeColumns(outputRecord, writer);
+		writer.endRecord();
+	}
+
+	private void writeColumns(OutputRecord outputRecord, CsvRecordWriter writer) throws IOException {
+		for (OutputColumn column : dialect.getOutputColumns()) {
+			column.write(outputRecord, writer);
+		}
+	}
+
+	private String outputHeader() {
+		return options.isRunLengthOutput() ? dialect.getOutputHeader() + "," + RunLengthExpander.RUN_DAYS_LABEL
+				: dialect.getOutputHeader();
+	}
+
+	List<PackedSessions> mapToParticipants(List<String> repRecordStrs) {
+		return mapToParticipants(repRecordStrs, null, null, null);
+	}
+
+	private List<PackedSessions> mapToParticipants(List<String> repRecordStrs, AggregateCube cube, RowIssues issues,
+			SessionDeduper deduper) {
+		ParticipantDictionary participants = new ParticipantDictionary();
+		for (String repRecordStr : repRecordStrs) {
+			packRecord(repRecordStr, tokenizer, participants, cube, issues, deduper);
+		}
+		return sortById(participants.values());
+	}
+
+	private List<PackedSessions> sortById(Collection<PackedSessions> participants) {
+		return participants.stream() //
+				.sorted(Comparator.comparing(PackedSessions::getParticipantId)) //
+				.collect(Collectors.toList());
+	}
+
+	/** @param deduper collapses duplicate session rows, or null to keep every row */
+	private List<PackedSessions> readParticipants(Path srcDataPath, AggregateCube cube, RowIssues issues,
+			SessionDeduper deduper) {
+		if (options.isMappedIngest() && CompressedFiles.isCompressed(srcDataPath)) {
+			System.out.println("streaming compressed source: it can't be memory-mapped");
+			return streamToParticipants(srcDataPath, cube, issues, deduper);
+		}
+		if (options.isMappedIngest() && deduper != null) {
+			System.out.println("streaming source: dedupe needs every row in file order in one table");
+			return streamToParticipants(srcDataPath, cube, issues, deduper);
+		}
+		if (options.isMappedIngest()) {
+			return mapChunksToParticipants(srcDataPath, cube, issues);
+		}
+		if (options.isStreamingIngest() || options.isPipelined()) {
+			return streamToParticipants(srcDataPath, cube, issues, deduper);
+		}
+		List<String> originalRecordStrs = readSourceData(srcDataPath);
+		return mapToParticipants(originalRecordStrs, cube, issues, deduper);
+	}
+
+	private SessionDeduper newDeduper() {
+		return options.getDedupeRule() == null ? null : new SessionDeduper(options.getDedupeRule(), dialect);
+	}
+
+	/**
+	 * Reads the source file and returns its participants, sorted by id, as
+	 * {@link Participant}/{@link Session} views over the packed session data.
+	 */
+	public List<Participant> readParticipants() {
+		return readParticipants(Paths.get(sourceRepDataFilePathStr), null, null, newDeduper()).stream() //
+				.map(PackedSessions::toParticipant) //
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Reads the source file into a {@link CreditsIndex} over the first to last
+	 * date, for point and range queries without generating the day summaries.
+	 */
+	public CreditsIndex readCreditsIndex() {
+		return CreditsIndex.ofPacked(readParticipants(Paths.get(sourceRepDataFilePathStr), null, null, newDeduper()),
+				firstDate, lastDate);
+	}
+
+	/**
+	 * Maps the source file into the dest file and any other outputs the options
+	 * ask for.
+	 *
+	 * @throws IllegalStateException if the source can't be read or an output
+	 *                               can't be written, in which case the outputs
+	 *                               may be partly written
+	 */
+	public void run() {
+		RunReport report = new RunReport(dialect.name(), sourceRepDataFilePathStr, destRepDataFilePathStr,
+				options.getSummaryThreads());
+		if (options.getReportPath() != null || options.isJmxReport()) {
+			report.resetPeakHeap();
+		}
+		run(report);
+		report.finish();
+
+		if (options.getReportPath() != null) {
+			report.print();
+			try {
+				report.append(Paths.get(options.getReportPath()));
+				System.out.println("Run report appended to: " + options.getReportPath());
+			} catch (IOException e) {
+				System.out.println("unable to write run report: \n" + e.getMessage());
+			}
+		}
+		if (options.isJmxReport()) {
+			RunReport.publish(report);
+		}
+	}
+
+	private void run(RunReport report) {
+
+		Path srcDataPath = Paths.get(sourceRepDataFilePathStr);
+		Path destDataPath = Paths.get(destRepDataFilePathStr);
+
+		boolean spilling = options.getMemoryBudgetMB() > 0;
+		if (spilling && options.isColumnarOutput()) {
+			System.out.println("ignoring memory budget: columnar output needs every participant up front");
+			spilling = false;
+		}
+		if (spilling && options.getDedupeRule() != null) {
+			System.out.println("ignoring memory budget: dedupe needs every kept session in memory to replace it");
+			spilling = false;
+		}
+
+		boolean checkpointed = options.getCheckpointPath() != null;
+		if (checkpointed && (options.isRunLengthOutput() || options.isColumnarOutput())) {
+			System.out.println("ignoring checkpoint: only dense CSV output can be appended to");
+			checkpointed = false;
+		}
+		if (checkpointed && (CompressedFiles.isCompressed(srcDataPath) || CompressedFiles.isCompressed(destDataPath))) {
+			System.out.println("ignoring checkpoint: compressed files can't be read from or appended at an offset");
+			checkpointed = false;
+		}
+		if (checkpointed && (!options.getWindows().isEmpty() || options.getBinDays() > 0)) {
+			System.out.println("ignoring checkpoint: only a single window's output can be appended to");
+			checkpointed = false;
+		}
+		if (checkpointed && options.getShardCount() > 1) {
+			System.out.println("ignoring checkpoint: only a single output file can be appended to");
+			checkpointed = false;
+		}
+		if (checkpointed && spilling) {
+			System.out.println("ignoring checkpoint: it needs every participant in memory");
+			checkpointed = false;
+		}
+
+		if (checkpointed && !options.isFullRecompute() && options.getCubePath() != null) {
+			System.out.println("Running a full recompute: the aggregate cube needs every row");
+		} else if (checkpointed && !options.isFullRecompute() && options.getCohortCurvesPath() != null) {
+			System.out.println("Running a full recompute: the cohort curves need every participant");
+		} else if (checkpointed && !options.isFullRecompute() && options.getDedupeRule() != null) {
+			System.out.println("Running a full recompute: appended rows may supersede rows already mapped");
+		} else if (checkpointed && !options.isFullRecompute()) {
+			StageMetrics incrementalStage = report.startStage("incremental");
+			boolean appended = runIncremental(srcDataPath, destDataPath, report);
+			report.endStage();
+
+			if (appended) {
+				incrementalStage.setBytesWritten(fileSize(destDataPath));
+				if (options.isVerifyIncremental()) {
+					report.startStage("verify");
+					verifyAgainstFullRecompute(destDataPath);
+					report.endStage();
+				}
+				return;
+			}
+		}
+
+		System.out.println("Reading data from source file: " + srcDataPath);
+		cohortCurves = options.getCohortCurvesPath() == null ? null : new CohortCurves(firstDate, lastDate);
+
+		if (spilling) {
+			runSpilling(srcDataPath, destDataPath, report);
+			return;
+		}
+
+		StageMetrics ingestStage = report.startStage("ingest");
+		ingestStage.setRatedByRowsIn(true);
+		AggregateCube cube = options.getCubePath() == null ? null : new AggregateCube(firstDate, lastDate);
+		// line 1 holds the labels
+		RowIssues issues = new RowIssues(options.getQuarantinePath() != null, 1);
+		SessionDeduper deduper = newDeduper();
+		List<PackedSessions> participants = readParticipants(srcDataPath, cube, issues, deduper);
+		report.endStage();
+		ingestStage.setBytesRead(fileSize(srcDataPath));
+		ingestStage.setRowsIn(issues.getLineCount());
+		ingestStage.setRowsOut(participants.size());
+		reportRowIssues(issues, report, false);
+		if (deduper != null) {
+			System.out.println("Collapsed " + deduper.getCollapsedCount() + " duplicate session rows ("
+					+ options.getDedupeRule() + ")");
+			report.setCollapsedRows(deduper.getCollapsedCount());
+		}
+
+		if (cube != null) {
+			writeCube(cube, report);
+		}
+
+		System.out.println("Writing output to dest file: " + destDataPath);
+
+		StageMetrics summarizeStage = report.addStage("summarize");
+		StageMetrics formatStage = options.isPipelined() && !options.isColumnarOutput() ? report.addStage("format")
+				: null;
+		StageMetrics writeStage = report.addStage("write");
+
+		if (options.isColumnarOutput()) {
+			if (CompressedFiles.isCompressed(destDataPath)) {
+				System.out.println("writing columnar output uncompressed: it is memory-mapped by readers");
+			}
+			if (!options.getWindows().isEmpty() || options.getBinDays() > 0) {
+				System.out.println("ignoring windows and bins: columnar output holds a single window");
+			}
+			if (options.getShardCount() > 1) {
+				System.out.println("ignoring shards: columnar output is a single file");
+			}
+			int dayCount = (int) ChronoUnit.DAYS.between(firstDate, lastDate) + 1;
+			try (ColumnarOutputWriter writer = new ColumnarOutputWriter(destDataPath, dialect, firstDate, dayCount,
+					participants)) {
+				writeSummaries(participants, writer::write, summarizeStage, writeStage);
+				writeStage.setRowsOut(writer.getRowCount());
+			} catch (IOException e) {
+				throw new IllegalStateException("unable to write dest file", e);
+			}
+			writeStage.setBytesWritten(fileSize(destDataPath));
+			writeCohortCurves(report);
+			return;
+		}
+
+		writeCsvOutput(participants, destDataPath, summarizeStage, formatStage, writeStage);
+		writeCohortCurves(report);
+
+		if (checkpointed) {
+			StageMetrics checkpointStage = report.startStage("checkpoint");
+			writeFullCheckpoint(srcDataPath, destDataPath, participants, 1 + issues.getLineCount());
+			report.endStage();
+			checkpointStage.setRowsIn(participants.size());
+			checkpointStage.setBytesWritten(fileSize(Paths.get(options.getCheckpointPath())));
+		}
+	}
+
+	/**
+	 * Writes the CSV output, throwing if it can't be written. With a format
+	 * stage, the output is pipelined and formatted on the summary pool.
+	 */
+	private void writeCsvOutput(Iterable<PackedSessions> participants, Path destDataPath,
+			StageMetrics summarizeStage, StageMetrics formatStage, StageMetrics writeStage) {
+		List<AnalysisWindow> windows = analysisWindows(destDataPath);
+		if (windows.size() > 1) {
+			if (options.getShardCount() > 1) {
+				System.out.println("ignoring shards: each window is written as a single file");
+			}
+			writeWindowOutputs(participants, windows, summarizeStage, formatStage, writeStage);
+			return;
+		}
+		if (options.getShardCount() > 1) {
+			writeShardedOutput(participants, destDataPath, summarizeStage, writeStage);
+			return;
+		}
+
+		try (CsvRecordWriter writer = new CsvRecordWriter(CompressedFiles.newWriter(destDataPath))) {
+			writer.line(outputHeader());
+			if (formatStage != null) {
+				writeSummariesPipelined(participants, writer, summarizeStage, formatStage, writeStage);
+			} else {
+				writeSummaries(participants, x -> writeOutputs(x, writer), summarizeStage, writeStage);
+			}
+			writeStage.setRowsOut(writer.getRecordCount() - 1);
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to write dest file", e);
+		}
+		writeStage.setBytesWritten(fileSize(destDataPath));
+	}
+
+	/**
+	 * Writes the CSV output as hash-partitioned shards and their manifest, with
+	 * each shard formatted and written on its own thread while participants are
+	 * summarized in order, on the summary pool when there is one.
+	 */
+	private void writeShardedOutput(Iterable<PackedSessions> participants, Path destDataPath,
+			StageMetrics summarizeStage, StageMetrics writeStage) {
+		Path manifestPath = ShardedOutputWriter.manifestPath(destDataPath);
+		System.out.println("Writing " + options.getShardCount() + " shards listed in: " + manifestPath);
+
+		try (ShardedOutputWriter writer = new ShardedOutputWriter(destDataPath, options.getShardCount(),
+				outputHeader(), (x, y) -> writeOutputs(x, y))) {
+			int threads = options.getSummaryThreads() > 1 ? options.getSummaryThreads() : 0;
+			forEachInOrder(participants, threads, x -> summarize(x, summarizeStage),
+					x -> write(x, writer::add, writeStage));
+			writer.finish(manifestPath);
+			writeStage.setRowsOut(writer.getRowCount());
+			writeStage.setBytesWritten(writer.getBytesWritten());
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to write shards", e);
+		}
+	}
+
+	/**
+	 * The windows to write: the first to last date into the dest path, then the
+	 * further windows, then, with bin days, the first to last date's bins.
+	 */
+	private List<AnalysisWindow> analysisWindows(Path destDataPath) {
+		List<AnalysisWindow> windows = new ArrayList<>();
+		windows.add(new AnalysisWindow(firstDate, lastDate, destDataPath.toString()));
+		windows.addAll(options.getWindows());
+
+		int binDays = options.getBinDays();
+		for (LocalDate binFirstDate = firstDate; binDays > 0 && !binFirstDate.isAfter(lastDate);
+				binFirstDate = binFirstDate.plusDays(binDays)) {
+			LocalDate binLastDate = binFirstDate.plusDays(binDays - 1);
+			windows.add(new AnalysisWindow(binFirstDate, binLastDate.isAfter(lastDate) ? lastDate : binLastDate,
+					AnalysisWindow.binDestPath(destDataPath.toString(), binFirstDate)));
+		}
+		return windows;
+	}
+
+	/**
+	 * Writes every window's CSV output in one pass over the participants. Each
+	 * participant's sessions are totalled by day once, over the span of all the
+	 * windows, and each window is summarized from those totals, so overlapping
+	 * windows share the bucketing and totalling rather than redoing it.
+	 */
+	private void writeWindowOutputs(Iterable<PackedSessions> participants, List<AnalysisWindow> windows,
+			StageMetrics summarizeStage, StageMetrics formatStage, StageMetrics writeStage) {
+		LocalDate spanFirstDate = windows.stream().map(AnalysisWindow::getFirstDate).min(Comparator.naturalOrder())
+				.get();
+		LocalDate spanLastDate = windows.stream().map(AnalysisWindow::getLastDate).max(Comparator.naturalOrder())
+				.get();
+		int spanDayCount = Math.max((int) ChronoUnit.DAYS.between(spanFirstDate, spanLastDate) + 1, 0);
+
+		List<CsvRecordWriter> writers = new ArrayList<>(windows.size());
+		IOException failure = null;
+		try {
+			for (AnalysisWindow window : windows.subList(1, windows.size())) {
+				System.out.println("Writing " + window.getFirstDate() + " to " + window.getLastDate()
+						+ " output to dest file: " + window.getDestPath());
+			}
+			for (AnalysisWindow window : windows) {
+				writers.add(new CsvRecordWriter(CompressedFiles.newWriter(Paths.get(window.getDestPath()))));
+				writers.get(writers.size() - 1).line(outputHeader());
+			}
+
+			ParticipantWork<List<List<OutputRecord>>> summarize = x -> summarizeWindows(x, windows, spanFirstDate,
+					spanDayCount, summarizeStage);
+			if (formatStage != null) {
+				forEachInOrder(participants, Math.max(1, options.getSummaryThreads()), x -> {
+					List<FormattedRows> formatted = new ArrayList<>(windows.size());
+					for (List<OutputRecord> daySummaries : summarize.apply(x)) {
+						formatted.add(format(daySummaries, formatStage));
+					}
+					return formatted;
+				}, x -> {
+					long startNanos = System.nanoTime();
+					for (int w = 0; w < writers.size(); w++) {
+						writers.get(w).formatted(x.get(w).text, x.get(w).recordCount);
+					}
+					writeStage.record(System.nanoTime() - startNanos, 0,
+							x.stream().mapToLong(y -> y.recordCount).sum(), 0);
+				});
+			} else {
+				int threads = options.getSummaryThreads() > 1 ? options.getSummaryThreads() : 0;
+				forEachInOrder(participants, threads, summarize, x -> {
+					for (int w = 0; w < writers.size(); w++) {
+						CsvRecordWriter writer = writers.get(w);
+						write(x.get(w), y -> writeOutputs(y, writer), writeStage);
+					}
+				});
+			}
+		} catch (IOException e) {
+			failure = e;
+		} finally {
+			for (CsvRecordWriter writer : writers) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					// closing flushes the last rows, so a failure here loses output too
+					if (failure == null) {
+						failure = e;
+					}
+				}
+			}
+		}
+		if (failure != null) {
+			throw new IllegalStateException("unable to write window outputs", failure);
+		}
+
+		long bytesWritten = 0;
+		for (AnalysisWindow window : windows) {
+			bytesWritten += fileSize(Paths.get(window.getDestPath()));
+		}
+		writeStage.setRowsOut(writers.stream().mapToLong(x -> x.getRecordCount() - 1).sum());
+		writeStage.setBytesWritten(bytesWritten);
+	}
+
+	private List<List<OutputRecord>> summarizeWindows(PackedSessions participant, List<AnalysisWindow> windows,
+			LocalDate spanFirstDate, int spanDayCount, StageMetrics summarizeStage) {
+		long startAllocatedBytes = RunReport.threadAllocatedBytes();
+		long startNanos = System.nanoTime();
+		DailyTotals totals = new DailyTotals(participant, spanFirstDate, spanDayCount);
+		List<List<OutputRecord>> windowSummaries = new ArrayList<>(windows.size());
+		long recordCount = 0;
+		for (AnalysisWindow window : windows) {
+			List<OutputRecord> daySummaries = totals.summarize(window.getFirstDate(), window.getLastDate());
+			windowSummaries.add(daySummaries);
+			recordCount += daySummaries.size();
+		}
+		if (cohortCurves != null) {
+			cohortCurves.add(windowSummaries.get(0));
+		}
+		summarizeStage.record(System.nanoTime() - startNanos, RunReport.allocatedSince(startAllocatedBytes), 1,
+				recordCount);
+		return windowSummaries;
+	}
+
+	/**
+	 * Runs within the memory budget: rows are grouped until the budget is
+	 * reached, then spilled to disk as runs sorted by participant id, and the
+	 * runs are merged one participant at a time into the summaries.
+	 */
+	private void runSpilling(Path srcDataPath, Path destDataPath, RunReport report) {
+		Path spillDir = Paths.get(options.getSpillDir() != null ? options.getSpillDir()
+				: System.getProperty("java.io.tmpdir"));
+		long budgetBytes = (long) options.getMemoryBudgetMB() << 20;
+
+		StageMetrics ingestStage = report.startStage("ingest");
+		ingestStage.setRatedByRowsIn(true);
+		AggregateCube cube = options.getCubePath() == null ? null : new AggregateCube(firstDate, lastDate);
+		RowIssues issues = new RowIssues(options.getQuarantinePath() != null, 1);
+		try (ExternalParticipantSort participants = new ExternalParticipantSort(budgetBytes, spillDir)) {
+			spillToParticipants(srcDataPath, participants, cube, issues);
+			report.endStage();
+			ingestStage.setBytesRead(fileSize(srcDataPath));
+			ingestStage.setRowsIn(issues.getLineCount());
+			ingestStage.setBytesWritten(participants.getSpilledBytes());
+			if (participants.getRunCount() > 0) {
+				System.out.println("Spilled " + participants.getRunCount() + " sorted runs ("
+						+ (participants.getSpilledBytes() >> 10) + " KB) to: " + spillDir);
+			}
+			reportRowIssues(issues, report, false);
+
+			if (cube != null) {
+				writeCube(cube, report);
+			}
+
+			System.out.println("Writing output to dest file: " + destDataPath);
+			StageMetrics summarizeStage = report.addStage("summarize");
+			StageMetrics formatStage = options.isPipelined() ? report.addStage("format") : null;
+			StageMetrics writeStage = report.addStage("write");
+			writeCsvOutput(participants, destDataPath, summarizeStage, formatStage, writeStage);
+			writeCohortCurves(report);
+			ingestStage.setRowsOut(summarizeStage.getRowsIn());
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to spill source rows", e);
+		}
+	}
+
+	/** Reads the source line by line into the sort, which spills whenever it passes its budget. */
+	private void spillToParticipants(Path srcDataPath, ExternalParticipantSort participants, AggregateCube cube,
+			RowIssues issues) throws IOException {
+		forEachSourceLine(srcDataPath, x -> {
+			packRecord(x, tokenizer, participants.getParticipants(), cube, issues, null);
+			participants.rowPacked();
+		});
+		participants.finish();
+	}
+
+	/**
+	 * Prints the row issues and adds them to the report, and writes the rejected
+	 * rows to the quarantine file, if there is one, or appends them to it.
+	 */
+	private void reportRowIssues(RowIssues issues, RunReport report, boolean appendQuarantine) {
+		issues.print();
+		report.setRowIssues(issues.toCounts());
+
+		if (options.getQuarantinePath() != null) {
+			Path quarantinePath = Paths.get(options.getQuarantinePath());
+			try {
+				issues.writeQuarantine(quarantinePath, appendQuarantine);
+				System.out.println("Wrote " + issues.getRejectedCount() + " rejected rows to quarantine file: "
+						+ quarantinePath);
+			} catch (IOException e) {
+				System.out.println("unable to write quarantine file: \n" + e.getMessage());
+			}
+		}
+	}
+
+	private void writeCube(AggregateCube cube, RunReport report) {
+		Path cubePath = Paths.get(options.getCubePath());
+		System.out.println("Writing aggregate cube to: " + cubePath);
+
+		StageMetrics cubeStage = report.startStage("cube");
+		try (CsvRecordWriter writer = new CsvRecordWriter(CompressedFiles.newWriter(cubePath))) {
+			cube.write(writer);
+			cubeStage.setRowsOut(writer.getRecordCount() - 1);
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to write aggregate cube", e);
+		}
+		report.endStage();
+		cubeStage.setBytesWritten(fileSize(cubePath));
+	}
+
+	/** Writes the cohort curves gathered while the participants were summarized, if the run gathers them. */
+	private void writeCohortCurves(RunReport report) {
+		if (cohortCurves == null) {
+			return;
+		}
+		Path cohortCurvesPath = Paths.get(options.getCohortCurvesPath());
+		System.out.println("Writing cohort curves to: " + cohortCurvesPath);
+
+		StageMetrics curvesStage = report.startStage("cohort-curves");
+		try (CsvRecordWriter writer = new CsvRecordWriter(CompressedFiles.newWriter(cohortCurvesPath))) {
+			cohortCurves.write(writer);
+			curvesStage.setRowsOut(writer.getRecordCount() - 1);
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to write cohort curves", e);
+		}
+		report.endStage();
+		curvesStage.setBytesWritten(fileSize(cohortCurvesPath));
+		cohortCurves = null;
+	}
+
+	/** The file's size, or -1 if it can't be read, for the run report. */
+	private long fileSize(Path path) {
+		try {
+			return Files.size(path);
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	private void writeFullCheckpoint(Path srcDataPath, Path destDataPath, List<PackedSessions> participants,
+			long sourceLineCount) {
+		Map<String, CumulativeState> participantStates = new TreeMap<>();
+		Map<String, PackedSessions> pendingSessions = new TreeMap<>();
+
+		for (PackedSessions participant : participants) {
+			CumulativeState state = new CumulativeState();
+			state.advance(participant, firstDate.toEpochDay(), lastDate.toEpochDay());
+			participantStates.put(participant.getParticipantId(), state);
+			addPendingSessions(participant, pendingSessions);
+		}
+
+		try (FileChannel channel = FileChannel.open(srcDataPath, StandardOpenOption.READ)) {
+			long sourceSize = channel.size();
+			Checkpoint nextCheckpoint = new Checkpoint(dialect.name(), sourceSize,
+					Checkpoint.fingerprint(channel, sourceSize), sourceLineCount, Files.size(destDataPath),
+					firstDate.toEpochDay(), lastDate.toEpochDay(), participantStates, pendingSessions);
+			nextCheckpoint.write(Paths.get(options.getCheckpointPath()));
+		} catch (IOException e) {
+			System.out.println("unable to write checkpoint: \n" + e.getMessage());
+		}
+	}
+
+	/** Keeps the sessions dated after the last date, which later runs still have to summarize. */
+	private void addPendingSessions(PackedSessions participant, Map<String, PackedSessions> pendingSessions) {
+		long lastEpochDay = lastDate.toEpochDay();
+		for (int i = 0; i < participant.size(); i++) {
+			if (participant.getEpochDay(i) != PackedSessions.NO_DATE && participant.getEpochDay(i) > lastEpochDay) {
+				pendingSessions.computeIfAbsent(participant.getParticipantId(), PackedSessions::new) //
+						.add(participant.getEpochDay(i), participant.getCreditsEarned(i),
+								participant.getCreditsMissed(i), participant.getFlags(i));
+			}
+		}
+	}
+
+	/**
+	 * Carries on from the checkpoint: parses only the rows appended to the source
+	 * since it was taken, and rewrites the output by copying each participant's
+	 * existing rows and appending the days after the checkpoint's last date.
+	 * Participants first seen in the new rows get zero rows for the earlier days.
+	 * Rows rejected from the new rows are appended to the quarantine file.
+	 *
+	 * @return false, without touching the output, when a full recompute is needed
+	 */
+	private boolean runIncremental(Path srcDataPath, Path destDataPath, RunReport report) {
+		Path checkpointPath = Paths.get(options.getCheckpointPath());
+
+		try (FileChannel channel = FileChannel.open(srcDataPath, StandardOpenOption.READ)) {
+			Checkpoint checkpoint = Checkpoint.read(checkpointPath);
+			String fullRecomputeReason = checkIncremental(checkpoint, channel, destDataPath);
+			if (fullRecomputeReason != null) {
+				System.out.println("Running a full recompute: " + fullRecomputeReason);
+				return false;
+			}
+
+			long sourceSize = channel.size();
+			ParticipantDictionary appendedParticipants = new ParticipantDictionary();
+			RowIssues issues = new RowIssues(options.getQuarantinePath() != null, checkpoint.getSourceLineCount());
+			if (sourceSize > checkpoint.getSourceSize()) {
+				System.out.println("Reading " + (sourceSize - checkpoint.getSourceSize())
+						+ " appended bytes from source file: " + srcDataPath);
+				MappedByteBuffer appended = channel.map(MapMode.READ_ONLY, checkpoint.getSourceSize(),
+						sourceSize - checkpoint.getSourceSize());
+				CsvLineTokenizer fields = dialect.newTokenizer();
+				MappedLineReader.forEachLine(appended, false, x -> packRecord(x, fields, appendedParticipants, null, issues,
+						null));
+			}
+			Map<String, PackedSessions> appendedSessions = appendedParticipants.toMap();
+
+			for (PackedSessions sessions : appendedSessions.values()) {
+				for (int i = 0; i < sessions.size(); i++) {
+					int epochDay = sessions.getEpochDay(i);
+					if (epochDay != PackedSessions.NO_DATE && epochDay >= checkpoint.getFirstEpochDay()
+							&& epochDay <= checkpoint.getLastEpochDay()) {
+						System.out.println("Running a full recompute: appended rows fall on days already written");
+						return false;
+					}
+				}
+			}
+
+			System.out.println("Appending days after " + LocalDate.ofEpochDay(checkpoint.getLastEpochDay())
+					+ " to dest file: " + destDataPath);
+			Map<String, CumulativeState> participantStates = new TreeMap<>(checkpoint.getParticipantStates());
+			for (String participantId : appendedSessions.keySet()) {
+				participantStates.computeIfAbsent(participantId, x -> new CumulativeState());
+			}
+			Map<String, PackedSessions> pendingSessions = new TreeMap<>();
+			writeIncrementalOutput(destDataPath, checkpoint, participantStates, appendedSessions, pendingSessions);
+			reportRowIssues(issues, report, true);
+
+			Checkpoint nextCheckpoint = new Checkpoint(dialect.name(), sourceSize,
+					Checkpoint.fingerprint(channel, sourceSize), checkpoint.getSourceLineCount() + issues.getLineCount(),
+					Files.size(destDataPath), firstDate.toEpochDay(), lastDate.toEpochDay(), participantStates,
+					pendingSessions);
+			nextCheckpoint.write(checkpointPath);
+			return true;
+		} catch (IOException e) {
+			System.out.println("Running a full recompute: unable to apply checkpoint: \n" + e.getMessage());
+			return false;
+		}
+	}
+
+	/** Returns why the checkpoint can't be used for an incremental run, or null if it can. */
+	private String checkIncremental(Checkpoint checkpoint, FileChannel channel, Path destDataPath) throws IOException {
+		if (checkpoint == null) {
+			return "no checkpoint found";
+		}
+		if (!checkpoint.getDialectName().equals(dialect.name())) {
+			return "dialect differs from the checkpoint";
+		}
+		if (checkpoint.getFirstEpochDay() != firstDate.toEpochDay()) {
+			return "first date differs from the checkpoint";
+		}
+		if (lastDate.toEpochDay() < checkpoint.getLastEpochDay()) {
+			return "last date is before the checkpoint";
+		}
+		if (channel.size() < checkpoint.getSourceSize()
+				|| Checkpoint.fingerprint(channel, checkpoint.getSourceSize()) != checkpoint.getSourceFingerprint()) {
+			return "source file was changed, not just appended to";
+		}
+		if (channel.size() - checkpoint.getSourceSize() > MappedLineReader.MAX_CHUNK_BYTES) {
+			return "too much appended data";
+		}
+		if (channel.size() > checkpoint.getSourceSize() && !endsWithNewline(channel, checkpoint.getSourceSize())) {
+			return "the last row read was unterminated";
+		}
+		if (!Files.exists(destDataPath) || Files.size(destDataPath) != checkpoint.getOutputSize()) {
+			return "dest file was changed since the checkpoint";
+		}
+		return null;
+	}
+
+	private boolean endsWithNewline(FileChannel channel, long position) throws IOException {
+		ByteBuffer lastByte = ByteBuffer.allocate(1);
+		return position == 0 || channel.read(lastByte, position - 1) == 1 && lastByte.get(0) == '\n';
+	}
+
+	private void writeIncrementalOutput(Path destDataPath, Checkpoint checkpoint,
+			Map<String, CumulativeState> participantStates, Map<String, PackedSessions> appendedSessions,
+			Map<String, PackedSessions> pendingSessions) throws IOException {
+		LocalDate checkpointDate = LocalDate.ofEpochDay(checkpoint.getLastEpochDay());
+		Path tempPath = destDataPath.resolveSibling(destDataPath.getFileName() + ".tmp");
+
+		try (BufferedReader previous = new BufferedReader(
+				new InputStreamReader(Files.newInputStream(destDataPath), StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+				CsvRecordWriter writer = new CsvRecordWriter(new BufferedWriter(
+						new OutputStreamWriter(Files.newOutputStream(tempPath), StandardCharsets.UTF_8),
+						WRITE_BUFFER_SIZE))) {
+			previous.readLine(); // ignore labels
+			writer.line(dialect.getOutputHeader());
+
+			String previousLine = previous.readLine();
+			for (Map.Entry<String, CumulativeState> entry : participantStates.entrySet()) {
+				String participantId = entry.getKey();
+				CumulativeState state = entry.getValue();
+
+				PackedSessions sessions = new PackedSessions(participantId);
+				if (checkpoint.getPendingSessions().containsKey(participantId)) {
+					sessions.addAll(checkpoint.getPendingSessions().get(participantId));
+				}
+				if (appendedSessions.containsKey(participantId)) {
+					sessions.addAll(appendedSessions.get(participantId));
+				}
+
+				if (checkpoint.getParticipantStates().containsKey(participantId)) {
+					String rowPrefix = CsvRecordWriter.escape(participantId) + ",";
+					while (previousLine != null && previousLine.startsWith(rowPrefix)) {
+						writer.line(previousLine);
+						previousLine = previous.readLine();
+					}
+				} else {
+					writeOutputs(generateDaySummaries(sessions, firstDate, checkpointDate, state), writer);
+				}
+
+				if (lastDate.isAfter(checkpointDate)) {
+					writeOutputs(generateDaySummaries(sessions, checkpointDate.plusDays(1), lastDate, state), writer);
+				}
+				addPendingSessions(sessions, pendingSessions);
+			}
+
+			if (previousLine != null) {
+				throw new IOException("dest file has rows for participants missing from the checkpoint");
+			}
+		}
+
+		Files.move(tempPath, destDataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Recomputes the output from scratch next to the incremental output and
+	 * checks the two are byte-identical.
+	 */
+	private void verifyAgainstFullRecompute(Path destDataPath) {
+		Path fullDataPath = destDataPath.resolveSibling(destDataPath.getFileName() + ".full");
+		new RepDataMapper(sourceRepDataFilePathStr, fullDataPath.toString(), firstDate, lastDate, dialect,
+				new RepMapperOptions()).run();
+
+		try {
+			boolean identical = sameContents(destDataPath, fullDataPath);
+			Files.delete(fullDataPath);
+			if (!identical) {
+				throw new IllegalStateException("incremental output differs from a full recompute: " + destDataPath);
+			}
+			System.out.println("Incremental output matches a full recompute");
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to verify incremental output", e);
+		}
+	}
+
+	private boolean sameContents(Path path, Path otherPath) throws IOException {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(path), READ_BUFFER_SIZE);
+				InputStream otherIn = new BufferedInputStream(Files.newInputStream(otherPath), READ_BUFFER_SIZE)) {
+			int b;
+			do {
+				b = in.read();
+				if (b != otherIn.read()) {
+					return false;
+				}
+			} while (b != -1);
+			return true;
+		}
+	}
+
+	public static void main(String[] args) {
+		System.out.println("Begin ...");
+
+		String sourcePath = "C:\\Users\\Randy\\Desktop\\osu-psych\\Javier data 2019\\REP-SP19-enrollments-PH.csv";
+		String destPath = "C:\\Users\\Randy\\Desktop\\osu-psych\\Javier data 2019\\REP-SP19-enrollments-PH - restructured.csv";
+		LocalDate firstDate = LocalDate.of(2019, 1, 7);
+		LocalDate lastDate = LocalDate.of(2019, 4, 16);
+
+		RepDataMapper mapper = new RepDataMapper(sourcePath, destPath, firstDate, lastDate);
+		mapper.run();
+
+		System.out.println("Complete");
+	}
+}
@@ -0,0 +1,32 @@
+package rep.mapping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class RepMapperOptions {
+    private ExportDialect dialect = ExportDialect.JAVIER; // export layout of the source file
+    private boolean streamingIngest; // read, parse and group line by line instead of loading the whole file
+    private boolean mappedIngest; // memory-map the source and parse newline-aligned chunks in parallel
+    private int ingestThreads; // threads for mapped ingest, 0 for one per available processor
+    private int summaryThreads = 1; // participants summarized concurrently when greater than 1
+    private boolean pipelined; // read on a background thread, and summarize and format on a pool while writing
+    private int memoryBudgetMB; // group rows within this heap budget, spilling sorted runs to disk; 0 for no limit
+    private String spillDir; // where spilled runs go, the system temp directory when null
+    private List<AnalysisWindow> windows = new ArrayList<>(); // further windows, each written to its own output
+    private int binDays; // also split the first to last date into bins of this many days, each in its own output
+    private int shardCount; // write the CSV output as this many hash-partitioned shards plus a manifest when above 1
+    private boolean runLengthOutput; // write runs of identical days as one row plus a runDays column
+    private boolean columnarOutput; // write the typed, memory-mappable columnar format instead of CSV
+    private DedupeRule dedupeRule; // collapse rows for the same session, keeping the one this rule picks; null keeps all
+    private String quarantinePath; // write rows rejected during ingest, with line number and reason, to this file
+    private String cubePath; // also write per-experiment and per-session-code daily totals to this file
+    private String cohortCurvesPath; // also write treated and untreated cohort credit curves to this file
+    private String checkpointPath; // enables incremental re-runs from the checkpoint at this path
+    private boolean fullRecompute; // ignore the checkpoint and recompute everything, then refresh it
+    private boolean verifyIncremental; // after an incremental run, compare the output with a full recompute
+    private String reportPath; // append a JSON run report to this file after each run
+    private boolean jmxReport; // publish the latest run report as an MXBean
+}
@@ -0,0 +1,47 @@
+package rep.mapping;
+
+/**
+ * Why an export row was repaired or rejected during ingest. Repaired rows are
+ * mapped with the repair applied; rejected rows are left out and, when a
+ * quarantine file is given, written to it with the reason.
+ */
+public enum RowIssue {
+	/** More fields than the layout has; the extra fields are ignored. */
+	EXTRA_FIELDS(false),
+	/** An empty credit, date or date-time field, read as missing. */
+	EMPTY_AS_NULL(false),
+	/** A session date whose day is past the end of its month, moved to the month's last day. */
+	DAY_CLAMPED(false),
+	/** A credit with more than three decimal places, rounded to the nearest thousandth. */
+	CREDIT_ROUNDED(false),
+	/**
+	 * A credit in thousandths that isn't a whole number of eighths, such as 0.1,
+	 * whose totals print as the exact decimal sum rather than the double sum.
+	 */
+	INEXACT_CREDIT(false),
+	/**
+	 * A start time that isn't {@code H:mm:ss}, which deduplication matches on
+	 * its text rather than its second of day. Only counted with a dedupe rule.
+	 */
+	BAD_START_TIME(false),
+
+	BLANK_LINE(true),
+	TOO_FEW_FIELDS(true),
+	MISSING_PARTICIPANT_ID(true),
+	BAD_CREDIT_EARNED(true),
+	BAD_CREDIT_MISSED(true),
+	BAD_SESSION_DATE(true),
+	BAD_CANCEL_DATE_TIME(true),
+	BAD_ENROLL_DATE_TIME(true);
+
+	private final boolean rejects;
+
+	RowIssue(boolean rejects) {
+		this.rejects = rejects;
+	}
+
+	/** Whether rows with this issue are left out rather than repaired. */
+	public boolean rejects() {
+		return rejects;
+	}
+}
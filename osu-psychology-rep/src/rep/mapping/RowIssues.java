@@ -0,0 +1,151 @@
+package rep.mapping;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the {@link RowIssue}s found while ingesting part of an export, and
+ * keeps the rejected rows, with their line numbers, for the quarantine file.
+ * Line numbers are the lines counted so far plus an offset, so a chunk read on
+ * its own can count from zero and be renumbered when it is merged in order.
+ */
+class RowIssues {
+
+	static final String QUARANTINE_HEADER = "lineNumber,reason,row";
+
+	private final boolean keepRejectedRows;
+	private final long lineNumberOffset;
+	private final long[] counts = new long[RowIssue.values().length];
+	private final List<RejectedRow> rejectedRows = new ArrayList<>();
+	private long lineCount;
+
+	/**
+	 * @param keepRejectedRows whether rejected rows are kept for a quarantine file
+	 * @param lineNumberOffset line number of the line before the first one counted
+	 */
+	RowIssues(boolean keepRejectedRows, long lineNumberOffset) {
+		this.keepRejectedRows = keepRejectedRows;
+		this.lineNumberOffset = lineNumberOffset;
+	}
+
+	boolean isKeepingRejectedRows() {
+		return keepRejectedRows;
+	}
+
+	/** Counts the next line and returns its line number. */
+	long nextLine() {
+		return lineNumberOffset + ++lineCount;
+	}
+
+	long getLineCount() {
+		return lineCount;
+	}
+
+	void repaired(RowIssue issue) {
+		counts[issue.ordinal()]++;
+	}
+
+	void rejected(RowIssue issue, long lineNumber, String row) {
+		counts[issue.ordinal()]++;
+		if (keepRejectedRows) {
+			rejectedRows.add(new RejectedRow(lineNumber, issue, row));
+		}
+	}
+
+	/** Adds the issues of the lines that follow these ones, renumbering them to follow on. */
+	void addAll(RowIssues following) {
+		long renumber = lineNumberOffset + lineCount - following.lineNumberOffset;
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += following.counts[i];
+		}
+		for (RejectedRow row : following.rejectedRows) {
+			rejectedRows.add(new RejectedRow(row.lineNumber + renumber, row.issue, row.row));
+		}
+		lineCount += following.lineCount;
+	}
+
+	long getCount(RowIssue issue) {
+		return counts[issue.ordinal()];
+	}
+
+	long getRepairedCount() {
+		long repaired = 0;
+		for (RowIssue issue : RowIssue.values()) {
+			repaired += issue.rejects() ? 0 : counts[issue.ordinal()];
+		}
+		return repaired;
+	}
+
+	long getRejectedCount() {
+		long rejected = 0;
+		for (RowIssue issue : RowIssue.values()) {
+			rejected += issue.rejects() ? counts[issue.ordinal()] : 0;
+		}
+		return rejected;
+	}
+
+	/** The count of each issue seen, by name, in declaration order. */
+	Map<String, Long> toCounts() {
+		Map<String, Long> issueCounts = new LinkedHashMap<>();
+		for (RowIssue issue : RowIssue.values()) {
+			if (counts[issue.ordinal()] > 0) {
+				issueCounts.put(issue.name(), counts[issue.ordinal()]);
+			}
+		}
+		return issueCounts;
+	}
+
+	void print() {
+		if (getRepairedCount() == 0 && getRejectedCount() == 0) {
+			return;
+		}
+		System.out.println("Repaired " + getRepairedCount() + " and rejected " + getRejectedCount() + " rows: "
+				+ toCounts().entrySet().stream().map(x -> x.getKey() + "=" + x.getValue())
+						.collect(Collectors.joining(", ")));
+	}
+
+	/**
+	 * Writes the rejected rows, as they appeared in the export, after their line
+	 * number and reason. With append, the rows are added to an existing file.
+	 */
+	void writeQuarantine(Path quarantinePath, boolean append) throws IOException {
+		boolean writeHeader = !append || !Files.exists(quarantinePath) || Files.size(quarantinePath) == 0;
+		StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+
+		try (CsvRecordWriter writer = new CsvRecordWriter(new BufferedWriter(new OutputStreamWriter(
+				Files.newOutputStream(quarantinePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode),
+				StandardCharsets.UTF_8)))) {
+			if (writeHeader) {
+				writer.line(QUARANTINE_HEADER);
+			}
+			for (RejectedRow row : rejectedRows) {
+				writer.field(row.lineNumber);
+				writer.field(row.issue.name());
+				writer.field(row.row);
+				writer.endRecord();
+			}
+		}
+	}
+
+	private static final class RejectedRow {
+		private final long lineNumber;
+		private final RowIssue issue;
+		private final String row;
+
+		private RejectedRow(long lineNumber, RowIssue issue, String row) {
+			this.lineNumber = lineNumber;
+			this.issue = issue;
+			this.row = row;
+		}
+	}
+}
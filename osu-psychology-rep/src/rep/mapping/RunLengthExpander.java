@@ -0,0 +1,64 @@
+package rep.mapping;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Expands run-length output, where each row is the first day of a run of
+ * identical days followed by the run's length, back into the dense one row per
+ * participant per day output. Every field but the day number and date is copied
+ * as read, and written back the same way, so the result is byte-identical to a
+ * dense run.
+ */
+public class RunLengthExpander {
+
+	static final String RUN_DAYS_LABEL = "runDays";
+
+	private RunLengthExpander() {
+	}
+
+	public static void expand(Path runLengthPath, Path densePath) throws IOException {
+		try (BufferedReader reader = CompressedFiles.newReader(runLengthPath);
+				CsvRecordWriter writer = new CsvRecordWriter(CompressedFiles.newWriter(densePath))) {
+			String header = reader.readLine();
+			if (header == null || !header.endsWith("," + RUN_DAYS_LABEL)) {
+				throw new IOException("not a run-length output file: " + runLengthPath);
+			}
+
+			String denseHeader = header.substring(0, header.length() - RUN_DAYS_LABEL.length() - 1);
+			String[] labels = denseHeader.split(",", -1);
+			int dayColumn = Arrays.asList(labels).indexOf(OutputColumn.DAY_NUM.getLabel());
+			int dateColumn = Arrays.asList(labels).indexOf(OutputColumn.DATE.getLabel());
+			writer.line(denseHeader);
+
+			CsvLineTokenizer fields = new CsvLineTokenizer();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				fields.reset(line);
+				if (fields.getFieldCount() != labels.length + 1) {
+					throw new IOException("expected " + (labels.length + 1) + " fields but got: " + line);
+				}
+
+				int runDays = Integer.parseInt(fields.getString(labels.length));
+				long day = dayColumn < 0 ? 0 : Long.parseLong(fields.getString(dayColumn));
+				LocalDate date = dateColumn < 0 ? null : LocalDate.parse(fields.getString(dateColumn));
+
+				for (int dayOffset = 0; dayOffset < runDays; dayOffset++) {
+					for (int i = 0; i < labels.length; i++) {
+						if (i == dayColumn) {
+							writer.field(day + dayOffset);
+						} else if (i == dateColumn) {
+							writer.field(date.plusDays(dayOffset));
+						} else {
+							writer.field(fields.getString(i));
+						}
+					}
+					writer.endRecord();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package rep.mapping;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Times each stage of a mapper run and counts what went through it. Stages on
+ * the calling thread are timed with {@link #startStage(String)} and
+ * {@link #endStage()}; stages whose work is spread over a pool record each unit
+ * of work into their {@link StageMetrics} instead. Measuring costs a couple of
+ * clock and counter reads per stage or per participant, so it is always on.
+ */
+public class RunReport implements RunReportMXBean {
+
+	static final String OBJECT_NAME = "rep.mapping:type=RunReport";
+
+	private static final com.sun.management.ThreadMXBean ALLOCATION = allocationCounter();
+
+	private final String dialect;
+	private final String sourcePath;
+	private final String destPath;
+	private final int summaryThreads;
+	private final long startTime = System.currentTimeMillis();
+	private final long startNanos = System.nanoTime();
+	private final List<StageMetrics> stages = new ArrayList<>();
+	private Map<String, Long> rowIssues = Collections.emptyMap();
+	private long collapsedRows;
+
+	private StageMetrics currentStage;
+	private long stageStartNanos;
+	private long stageStartAllocatedBytes;
+
+	private long totalNanos;
+	private long peakHeapBytes;
+
+	RunReport(String dialect, String sourcePath, String destPath, int summaryThreads) {
+		this.dialect = dialect;
+		this.sourcePath = sourcePath;
+		this.destPath = destPath;
+		this.summaryThreads = summaryThreads;
+	}
+
+	/** Starts measuring the peak heap from now rather than from JVM start. */
+	void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean allocationCounter() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+			return (com.sun.management.ThreadMXBean) threads;
+		}
+		return null;
+	}
+
+	/** Bytes allocated so far by the calling thread, or -1 if the JVM can't tell. */
+	static long threadAllocatedBytes() {
+		return ALLOCATION == null || !ALLOCATION.isThreadAllocatedMemoryEnabled() ? -1
+				: ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	static long allocatedSince(long startAllocatedBytes) {
+		return startAllocatedBytes < 0 ? -1 : threadAllocatedBytes() - startAllocatedBytes;
+	}
+
+	/** Adds a stage that records its own work, for stages spread over a pool. */
+	StageMetrics addStage(String name) {
+		StageMetrics stage = new StageMetrics(name);
+		stages.add(stage);
+		return stage;
+	}
+
+	/** Starts timing a stage run on the calling thread, until {@link #endStage()}. */
+	StageMetrics startStage(String name) {
+		currentStage = addStage(name);
+		stageStartAllocatedBytes = threadAllocatedBytes();
+		stageStartNanos = System.nanoTime();
+		return currentStage;
+	}
+
+	void endStage() {
+		currentStage.record(System.nanoTime() - stageStartNanos, allocatedSince(stageStartAllocatedBytes), 0, 0);
+		currentStage = null;
+	}
+
+	void finish() {
+		totalNanos = System.nanoTime() - startNanos;
+
+		peakHeapBytes = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+				peakHeapBytes += pool.getPeakUsage().getUsed();
+			}
+		}
+	}
+
+	@Override
+	public String getDialect() {
+		return dialect;
+	}
+
+	@Override
+	public String getSourcePath() {
+		return sourcePath;
+	}
+
+	@Override
+	public String getDestPath() {
+		return destPath;
+	}
+
+	@Override
+	public long getStartTime() {
+		return startTime;
+	}
+
+	@Override
+	public long getTotalMillis() {
+		return totalNanos / 1_000_000;
+	}
+
+	@Override
+	public long getPeakHeapBytes() {
+		return peakHeapBytes;
+	}
+
+	@Override
+	public Map<String, Long> getRowIssues() {
+		return Collections.unmodifiableMap(rowIssues);
+	}
+
+	void setRowIssues(Map<String, Long> rowIssues) {
+		this.rowIssues = rowIssues;
+	}
+
+	@Override
+	public long getCollapsedRows() {
+		return collapsedRows;
+	}
+
+	void setCollapsedRows(long collapsedRows) {
+		this.collapsedRows = collapsedRows;
+	}
+
+	@Override
+	public List<StageMetrics> getStages() {
+		return Collections.unmodifiableList(stages);
+	}
+
+	/** The report as a single line of JSON. */
+	public String toJson() {
+		StringBuilder json = new StringBuilder(256 + 192 * stages.size());
+		json.append('{');
+		appendField(json, "startTime", Instant.ofEpochMilli(startTime).toString()).append(',');
+		appendField(json, "dialect", dialect).append(',');
+		appendField(json, "source", sourcePath).append(',');
+		appendField(json, "dest", destPath).append(',');
+		json.append("\"summaryThreads\":").append(summaryThreads).append(',');
+		json.append("\"totalMillis\":").append(getTotalMillis()).append(',');
+		json.append("\"peakHeapBytes\":").append(peakHeapBytes).append(',');
+		json.append("\"rowIssues\":{");
+		boolean firstIssue = true;
+		for (Map.Entry<String, Long> issue : rowIssues.entrySet()) {
+			json.append(firstIssue ? "\"" : ",\"").append(issue.getKey()).append("\":").append(issue.getValue());
+			firstIssue = false;
+		}
+		json.append("},");
+		json.append("\"collapsedRows\":").append(collapsedRows).append(',');
+		json.append("\"stages\":[");
+		for (int i = 0; i < stages.size(); i++) {
+			StageMetrics stage = stages.get(i);
+			json.append(i == 0 ? "{" : ",{");
+			appendField(json, "name", stage.getName()).append(',');
+			json.append("\"millis\":").append(stage.getNanos() / 1_000_000).append(',');
+			json.append("\"rowsIn\":").append(stage.getRowsIn()).append(',');
+			json.append("\"rowsOut\":").append(stage.getRowsOut()).append(',');
+			json.append("\"rowsPerSecond\":").append(Math.round(stage.getRowsPerSecond())).append(',');
+			json.append("\"bytesRead\":").append(stage.getBytesRead()).append(',');
+			json.append("\"bytesWritten\":").append(stage.getBytesWritten()).append(',');
+			json.append("\"allocatedBytes\":").append(stage.getAllocatedBytes());
+			json.append('}');
+		}
+		return json.append("]}").toString();
+	}
+
+	private static StringBuilder appendField(StringBuilder json, String name, String value) {
+		json.append('"').append(name).append("\":");
+		if (value == null) {
+			return json.append("null");
+		}
+
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < ' ') {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"');
+	}
+
+	/** Appends the report to the file as one JSON line, so successive runs build up a history. */
+	void append(Path reportPath) throws IOException {
+		Files.write(reportPath, (toJson() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	void print() {
+		for (StageMetrics stage : stages) {
+			System.out.println(String.format(Locale.ROOT, "  %-10s %8d ms %12.0f rows/sec", stage.getName(),
+					stage.getNanos() / 1_000_000, stage.getRowsPerSecond()));
+		}
+		System.out.println(String.format(Locale.ROOT, "  %-10s %8d ms, peak heap %d MB", "total", getTotalMillis(),
+				peakHeapBytes >> 20));
+	}
+
+	/** Registers the report as the platform MBean server's latest run report, replacing the previous one. */
+	static synchronized void publish(RunReport report) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(report, name);
+		} catch (JMException e) {
+			System.out.println("unable to publish run report: \n" + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package rep.mapping;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most recent run's report, published under {@value RunReport#OBJECT_NAME}
+ * when the mapper is run with JMX reporting enabled.
+ */
+public interface RunReportMXBean {
+
+	String getDialect();
+
+	String getSourcePath();
+
+	String getDestPath();
+
+	/** When the run started, in milliseconds since the epoch. */
+	long getStartTime();
+
+	long getTotalMillis();
+
+	long getPeakHeapBytes();
+
+	/** How many rows had each {@link RowIssue}, by name. */
+	Map<String, Long> getRowIssues();
+
+	/** How many duplicate session rows were collapsed during ingest. */
+	long getCollapsedRows();
+
+	List<StageMetrics> getStages();
+}
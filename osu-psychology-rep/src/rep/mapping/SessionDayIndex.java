@@ -0,0 +1,54 @@
+package rep.mapping;
+
+import java.time.LocalDate;
+
+/**
+ * A participant's sessions bucketed by day offset from the first date, so each
+ * day's sessions can be visited directly instead of filtering the full list.
+ * Sessions keep their original relative order within a day.
+ */
+class SessionDayIndex {
+
+	private final int[] sessionsByDay;
+	private final int[] dayStarts;
+
+	SessionDayIndex(PackedSessions sessions, LocalDate firstDate, int dayCount) {
+		long firstEpochDay = firstDate.toEpochDay();
+		int[] dayOffsets = new int[sessions.size()];
+
+		dayStarts = new int[dayCount + 1];
+		for (int i = 0; i < dayOffsets.length; i++) {
+			int epochDay = sessions.getEpochDay(i);
+			long dayOffset = epochDay == PackedSessions.NO_DATE ? -1 : epochDay - firstEpochDay;
+			dayOffsets[i] = dayOffset < 0 || dayOffset >= dayCount ? -1 : (int) dayOffset;
+			if (dayOffsets[i] >= 0) {
+				dayStarts[dayOffsets[i] + 1]++;
+			}
+		}
+		for (int d = 0; d < dayCount; d++) {
+			dayStarts[d + 1] += dayStarts[d];
+		}
+
+		sessionsByDay = new int[dayStarts[dayCount]];
+		int[] nextSlot = new int[dayCount];
+		for (int i = 0; i < dayOffsets.length; i++) {
+			int d = dayOffsets[i];
+			if (d >= 0) {
+				sessionsByDay[dayStarts[d] + nextSlot[d]++] = i;
+			}
+		}
+	}
+
+	int start(int dayOffset) {
+		return dayStarts[dayOffset];
+	}
+
+	int end(int dayOffset) {
+		return dayStarts[dayOffset + 1];
+	}
+
+	/** Returns the index into the packed sessions of the i-th bucketed session. */
+	int get(int i) {
+		return sessionsByDay[i];
+	}
+}
@@ -0,0 +1,148 @@
+package rep.mapping;
+
+/**
+ * Collapses duplicate rows for one session while the export is parsed. Rows
+ * with the same participant, experiment, session code, session date and start
+ * time are the same session, and only the row the {@link DedupeRule} picks is
+ * kept. Start times match on their second of day, so {@code 9:00:00} and
+ * {@code 09:00:00} are the same time. Each key is five int codes in an open-addressing table of primitive
+ * arrays, so checking a row is one probe sequence and creates no objects. A row
+ * that wins replaces the kept row's session in place, so sessions stay in the
+ * order they first appeared in.
+ */
+class SessionDeduper {
+
+	/** Returned by {@link #keep} for a row that is a session not seen before. */
+	static final int NEW_SESSION = -1;
+	/** Returned by {@link #keep} for a row that loses to the kept row and is left out. */
+	static final int COLLAPSED = -2;
+
+	/** Start time key for a row without one; malformed start times key below it. */
+	private static final int NO_START_TIME = -1;
+
+	private static final int KEY_INTS = 5;
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	private final DedupeRule rule;
+	private final ExportDialect dialect;
+	private final FieldDictionary experiments = new FieldDictionary();
+	private final FieldDictionary sessionCodes = new FieldDictionary();
+	private final FieldDictionary malformedStartTimes = new FieldDictionary();
+
+	private int[] keys = new int[INITIAL_CAPACITY * KEY_INTS];
+	private int[] sessions = new int[INITIAL_CAPACITY]; // kept session's index + 1, or 0 for an empty slot
+	private long[] ranks = new long[INITIAL_CAPACITY];
+	private int size;
+	private long collapsedCount;
+
+	SessionDeduper(DedupeRule rule, ExportDialect dialect) {
+		this.rule = rule;
+		this.dialect = dialect;
+	}
+
+	/**
+	 * The row's start time key: its second of day, {@link #NO_START_TIME} when
+	 * it is empty or null, or, when it isn't {@code H:mm:ss}, a value below that
+	 * coded from its text, so only rows with the same malformed text match.
+	 */
+	int startTimeOf(CsvLineTokenizer fields) {
+		int column = dialect.getStartTimeColumn();
+		if (fields.isEmpty(column) || fields.isNull(column)) {
+			return NO_START_TIME;
+		}
+		int secondOfDay = fields.parseSecondOfDay(column);
+		return secondOfDay != CsvLineTokenizer.INVALID_TIME ? secondOfDay
+				: NO_START_TIME - 1 - malformedStartTimes.codeOf(fields, column);
+	}
+
+	/** Whether a {@link #startTimeOf} key is for a start time that isn't {@code H:mm:ss}. */
+	static boolean isMalformed(int startTime) {
+		return startTime < NO_START_TIME;
+	}
+
+	/**
+	 * Checks the row against the sessions kept so far for the participant.
+	 *
+	 * @param participantCode the participant's {@link ParticipantDictionary} code
+	 * @param startTime       the row's {@link #startTimeOf} key
+	 * @param nextSession     the index the row's session gets if it is new
+	 * @return {@link #NEW_SESSION}, {@link #COLLAPSED}, or the index of the kept
+	 *         session the row replaces
+	 */
+	int keep(CsvLineTokenizer fields, int participantCode, int epochDay, int startTime, int flags, int nextSession) {
+		int experiment = experiments.codeOf(fields, dialect.getExperimentIdColumn());
+		int sessionCode = sessionCodes.codeOf(fields, dialect.getSessionCodeColumn());
+		long rank = rule.rank(fields, dialect, flags);
+
+		int mask = sessions.length - 1;
+		int slot = hash(participantCode, experiment, sessionCode, epochDay, startTime) & mask;
+		for (;; slot = (slot + 1) & mask) {
+			if (sessions[slot] == 0) {
+				break;
+			}
+			int key = slot * KEY_INTS;
+			if (keys[key] == participantCode && keys[key + 1] == experiment && keys[key + 2] == sessionCode
+					&& keys[key + 3] == epochDay && keys[key + 4] == startTime) {
+				collapsedCount++;
+				if (!rule.replaces(rank, ranks[slot])) {
+					return COLLAPSED;
+				}
+				ranks[slot] = rank;
+				return sessions[slot] - 1;
+			}
+		}
+
+		int key = slot * KEY_INTS;
+		keys[key] = participantCode;
+		keys[key + 1] = experiment;
+		keys[key + 2] = sessionCode;
+		keys[key + 3] = epochDay;
+		keys[key + 4] = startTime;
+		sessions[slot] = nextSession + 1;
+		ranks[slot] = rank;
+		if (++size * 2 > sessions.length) {
+			rehash(sessions.length * 2);
+		}
+		return NEW_SESSION;
+	}
+
+	/** Rows left out or replaced because a row for the same session was kept. */
+	long getCollapsedCount() {
+		return collapsedCount;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldSessions = sessions;
+		long[] oldRanks = ranks;
+		keys = new int[capacity * KEY_INTS];
+		sessions = new int[capacity];
+		ranks = new long[capacity];
+
+		int mask = capacity - 1;
+		for (int oldSlot = 0; oldSlot < oldSessions.length; oldSlot++) {
+			if (oldSessions[oldSlot] == 0) {
+				continue;
+			}
+			int oldKey = oldSlot * KEY_INTS;
+			int slot = hash(oldKeys[oldKey], oldKeys[oldKey + 1], oldKeys[oldKey + 2], oldKeys[oldKey + 3],
+					oldKeys[oldKey + 4]) & mask;
+			while (sessions[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			System.arraycopy(oldKeys, oldKey, keys, slot * KEY_INTS, KEY_INTS);
+			sessions[slot] = oldSessions[oldSlot];
+			ranks[slot] = oldRanks[oldSlot];
+		}
+	}
+
+	private static int hash(int participantCode, int experiment, int sessionCode, int epochDay, int startTime) {
+		int hash = participantCode;
+		hash = 31 * hash + experiment;
+		hash = 31 * hash + sessionCode;
+		hash = 31 * hash + epochDay;
+		hash = 31 * hash + startTime;
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
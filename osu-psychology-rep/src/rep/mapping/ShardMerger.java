@@ -0,0 +1,114 @@
+package rep.mapping;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges sharded output back into the single-file output. Shards are hash
+ * partitioned, so a participant's rows are all in one shard, in order, and each
+ * shard is sorted by participant id; merging the shards by participant id
+ * therefore gives a file byte-identical to an unsharded run.
+ */
+public class ShardMerger {
+
+	private ShardMerger() {
+	}
+
+	/** Merges the shards listed in the manifest, found beside it, into mergedPath. */
+	public static void merge(Path manifestPath, Path mergedPath) throws IOException {
+		List<Path> shardPaths = readManifest(manifestPath);
+		List<ShardReader> readers = new ArrayList<>(shardPaths.size());
+		try (CsvRecordWriter writer = new CsvRecordWriter(CompressedFiles.newWriter(mergedPath))) {
+			String header = null;
+			for (Path shardPath : shardPaths) {
+				ShardReader reader = new ShardReader(CompressedFiles.newReader(shardPath), readers.size());
+				readers.add(reader);
+				String shardHeader = reader.lines.readLine();
+				if (shardHeader == null || (header != null && !header.equals(shardHeader))) {
+					throw new IOException("shard header doesn't match the first shard's: " + shardPath);
+				}
+				header = shardHeader;
+			}
+			if (header == null) {
+				throw new IOException("no shards listed in: " + manifestPath);
+			}
+			writer.line(header);
+
+			int idColumn = Arrays.asList(header.split(",", -1)).indexOf(OutputColumn.PARTICIPANT_ID.getLabel());
+			if (idColumn < 0) {
+				throw new IOException("shards have no " + OutputColumn.PARTICIPANT_ID.getLabel() + " column");
+			}
+
+			PriorityQueue<ShardReader> heads = new PriorityQueue<>(
+					Comparator.comparing((ShardReader x) -> x.participantId).thenComparingInt(x -> x.index));
+			for (ShardReader reader : readers) {
+				if (reader.advance(idColumn)) {
+					heads.add(reader);
+				}
+			}
+			while (!heads.isEmpty()) {
+				ShardReader reader = heads.poll();
+				String participantId = reader.participantId;
+				do {
+					writer.line(reader.line);
+				} while (reader.advance(idColumn) && reader.participantId.equals(participantId));
+				if (reader.line != null) {
+					heads.add(reader);
+				}
+			}
+		} finally {
+			for (ShardReader reader : readers) {
+				reader.lines.close();
+			}
+		}
+	}
+
+	private static List<Path> readManifest(Path manifestPath) throws IOException {
+		List<Path> shardPaths = new ArrayList<>();
+		Path dir = manifestPath.toAbsolutePath().getParent();
+		try (BufferedReader reader = CompressedFiles.newReader(manifestPath)) {
+			String header = reader.readLine();
+			if (!ShardedOutputWriter.MANIFEST_HEADER.equals(header)) {
+				throw new IOException("not a shard manifest: " + manifestPath);
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty()) {
+					shardPaths.add(dir.resolve(line.split(",", -1)[1]));
+				}
+			}
+		}
+		return shardPaths;
+	}
+
+	private static final class ShardReader {
+		private final BufferedReader lines;
+		private final int index;
+		private final CsvLineTokenizer fields = new CsvLineTokenizer();
+		private String line;
+		private String participantId;
+
+		ShardReader(BufferedReader lines, int index) {
+			this.lines = lines;
+			this.index = index;
+		}
+
+		/** Reads the shard's next row, or returns false at its end. */
+		boolean advance(int idColumn) throws IOException {
+			line = lines.readLine();
+			if (line == null) {
+				participantId = null;
+				return false;
+			}
+			fields.reset(line);
+			participantId = fields.getString(idColumn);
+			return true;
+		}
+	}
+}
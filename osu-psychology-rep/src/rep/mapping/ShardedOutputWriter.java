@@ -0,0 +1,232 @@
+package rep.mapping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes the CSV output as shard files, each participant going to the shard
+ * picked by a stable hash of their id, so a participant lands in the same
+ * shard on every run with the same shard count. Each shard has its own writer
+ * thread, fed through a bounded queue, so formatting and writing run on every
+ * shard at once. Participants are added in id order, so each shard is sorted
+ * by id too, and {@link ShardMerger} merges the shards back into the
+ * single-file output.
+ */
+class ShardedOutputWriter implements Closeable {
+
+	static final String MANIFEST_HEADER = "shard,path,participantCount,rowCount";
+
+	private static final int QUEUED_PARTICIPANTS = 64;
+	private static final List<OutputRecord> END = Collections.emptyList();
+
+	private final List<Shard> shards = new ArrayList<>();
+	private final RecordsWriter recordsWriter;
+	private boolean finished;
+	private boolean failureThrown;
+
+	/** Writes a participant's day summaries to a shard's writer. */
+	interface RecordsWriter {
+		void write(List<OutputRecord> daySummaries, CsvRecordWriter writer) throws IOException;
+	}
+
+	/**
+	 * Creates the shard files beside destPath and starts their writer threads.
+	 *
+	 * @param header        the first line of every shard, so each reads on its own
+	 * @param recordsWriter how a participant's day summaries are written
+	 */
+	ShardedOutputWriter(Path destPath, int shardCount, String header, RecordsWriter recordsWriter)
+			throws IOException {
+		this.recordsWriter = recordsWriter;
+		try {
+			for (int i = 0; i < shardCount; i++) {
+				Path shardPath = Paths.get(CompressedFiles.withNameSuffix(destPath.toString(),
+						" - shard " + (i + 1) + " of " + shardCount));
+				Shard shard = new Shard(shardPath, new CsvRecordWriter(CompressedFiles.newWriter(shardPath)));
+				shards.add(shard);
+				shard.writer.line(header);
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+		for (Shard shard : shards) {
+			shard.thread.start();
+		}
+	}
+
+	/** Where the manifest of destPath's shards goes: beside it, always uncompressed. */
+	static Path manifestPath(Path destPath) {
+		return Paths.get(CompressedFiles.withNameSuffix(
+				CompressedFiles.stripCompressionExtension(destPath.toString()), " - shards"));
+	}
+
+	/** The shard a participant's rows go to. */
+	static int shardOf(String participantId, int shardCount) {
+		return Math.floorMod(participantId.hashCode(), shardCount);
+	}
+
+	/** Queues a participant's day summaries for their shard; participants must be added in id order. */
+	void add(List<OutputRecord> daySummaries) throws IOException {
+		if (daySummaries.isEmpty()) {
+			return;
+		}
+		Shard shard = shards.get(shardOf(daySummaries.get(0).getParticipantId(), shards.size()));
+		if (shard.failure != null) {
+			throwFailure(shard.failure);
+		}
+		try {
+			shard.queue.put(daySummaries);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while writing shards", e);
+		}
+	}
+
+	/**
+	 * Waits for every shard to be written and closed, then writes the manifest
+	 * listing the shards, by file name, with their participant and row counts.
+	 */
+	void finish(Path manifestPath) throws IOException {
+		try {
+			for (Shard shard : shards) {
+				shard.queue.put(END);
+			}
+			for (Shard shard : shards) {
+				shard.thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while writing shards", e);
+		}
+		finished = true;
+
+		Throwable failure = null;
+		for (Shard shard : shards) {
+			try {
+				shard.writer.close();
+			} catch (IOException e) {
+				failure = failure == null ? e : failure;
+			}
+			failure = failure == null ? shard.failure : failure;
+		}
+		if (failure != null) {
+			throwFailure(failure);
+		}
+
+		try (CsvRecordWriter manifest = new CsvRecordWriter(CompressedFiles.newWriter(manifestPath))) {
+			manifest.line(MANIFEST_HEADER);
+			for (int i = 0; i < shards.size(); i++) {
+				Shard shard = shards.get(i);
+				manifest.field(i + 1);
+				manifest.field(shard.path.getFileName().toString());
+				manifest.field(shard.participantCount);
+				manifest.field(shard.writer.getRecordCount() - 1);
+				manifest.endRecord();
+			}
+		}
+	}
+
+	long getRowCount() {
+		return shards.stream().mapToLong(x -> x.writer.getRecordCount() - 1).sum();
+	}
+
+	long getBytesWritten() throws IOException {
+		long bytesWritten = 0;
+		for (Shard shard : shards) {
+			bytesWritten += Files.size(shard.path);
+		}
+		return bytesWritten;
+	}
+
+	/**
+	 * Stops the writer threads and closes the shards if they weren't finished,
+	 * then throws a writer thread's failure if nothing has thrown it yet.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		for (Shard shard : shards) {
+			shard.thread.interrupt();
+		}
+		for (Shard shard : shards) {
+			try {
+				shard.thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			shard.writer.close();
+		}
+		for (Shard shard : shards) {
+			if (shard.failure != null && !failureThrown) {
+				throwFailure(shard.failure);
+			}
+		}
+	}
+
+	/** Throws a writer thread's failure on the calling thread, once. */
+	private void throwFailure(Throwable failure) throws IOException {
+		failureThrown = true;
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		throw new IllegalStateException("unable to write a shard", failure);
+	}
+
+	private final class Shard {
+		private final Path path;
+		private final CsvRecordWriter writer;
+		private final BlockingQueue<List<OutputRecord>> queue = new ArrayBlockingQueue<>(QUEUED_PARTICIPANTS);
+		private final Thread thread;
+		private volatile Throwable failure;
+		private long participantCount;
+
+		Shard(Path path, CsvRecordWriter writer) {
+			this.path = path;
+			this.writer = writer;
+			this.thread = new Thread(this::write, "rep-shard-" + path.getFileName());
+			thread.setDaemon(true);
+		}
+
+		/**
+		 * Writes queued participants until the end. Any failure, checked or not,
+		 * is kept for the adding thread, and the thread keeps taking participants
+		 * so adding never blocks.
+		 */
+		private void write() {
+			try {
+				List<OutputRecord> daySummaries;
+				while ((daySummaries = queue.take()) != END) {
+					if (failure != null) {
+						continue;
+					}
+					try {
+						recordsWriter.write(daySummaries, writer);
+						participantCount++;
+					} catch (Throwable e) {
+						failure = e;
+					}
+				}
+			} catch (InterruptedException e) {
+				// closed before the end was queued
+			}
+		}
+	}
+}
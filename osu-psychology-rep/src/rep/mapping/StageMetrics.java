@@ -0,0 +1,32 @@
+package rep.mapping;
+
+import lombok.Data;
+
+/** One stage's measurements, recorded from pool threads while the run and JMX threads read them. */
+@Data
+public class StageMetrics {
+    private final String name;
+    private volatile long nanos; // time in the stage, summed across threads when it runs on a pool
+    private volatile long rowsIn;
+    private volatile long rowsOut;
+    private volatile long bytesRead;
+    private volatile long bytesWritten;
+    private volatile long allocatedBytes; // -1 when the JVM can't measure per-thread allocation
+    private volatile boolean ratedByRowsIn; // rate by rows in even with rows out, for stages that condense rows, like ingest
+
+    /** Rows per second through the stage, by rows out when it has any, otherwise or when rated so by rows in. */
+    public synchronized double getRowsPerSecond() {
+        long rows = rowsOut > 0 && !ratedByRowsIn ? rowsOut : rowsIn;
+        return nanos == 0 ? 0 : rows * 1e9 / nanos;
+    }
+
+    /** Adds one unit of work done on any thread, such as one participant's summaries. */
+    synchronized void record(long workNanos, long workAllocatedBytes, long workRowsIn, long workRowsOut) {
+        nanos += workNanos;
+        rowsIn += workRowsIn;
+        rowsOut += workRowsOut;
+        if (allocatedBytes >= 0) {
+            allocatedBytes = workAllocatedBytes < 0 ? -1 : allocatedBytes + workAllocatedBytes;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package rep.mapping.cli;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+
+import rep.mapping.AnalysisWindow;
+import rep.mapping.BatchJob;
+import rep.mapping.DedupeRule;
+import rep.mapping.ExportDialect;
+import rep.mapping.RepDataMapper;
+import rep.mapping.RepMapperOptions;
+import rep.mapping.RunLengthExpander;
+import rep.mapping.ShardMerger;
+
+public class RepMapperCli {
+	public static void main(String[] args) throws IOException {
+		System.out.println("Begin ...");
+
+		if (args.length > 0 && "--batch".equals(args[0])) {
+			runBatch(args[1], parseOptions(args, 2));
+			System.out.println("Complete");
+			return;
+		}
+		if (args.length > 0 && "--watch".equals(args[0])) {
+			runWatch(args);
+			return;
+		}
+		if (args.length > 0 && "--expand".equals(args[0])) {
+			RunLengthExpander.expand(Paths.get(args[1]), Paths.get(args[2]));
+			System.out.println("Complete");
+			return;
+		}
+		if (args.length > 0 && "--merge-shards".equals(args[0])) {
+			ShardMerger.merge(Paths.get(args[1]), Paths.get(args[2]));
+			System.out.println("Complete");
+			return;
+		}
+
+		String sourcePath = args[0];
+		String destPath = args[1];
+		LocalDate firstDate = LocalDate.parse(args[2]);
+		LocalDate lastDate = LocalDate.parse(args[3]);
+
+		RepMapperOptions options = parseOptions(args, 4);
+
+		RepDataMapper mapper = new RepDataMapper(sourcePath, destPath, firstDate, lastDate, options);
+		mapper.run();
+
+		System.out.println("Complete");
+	}
+
+	/**
+	 * Runs every job in the manifest in this one process, so startup and JIT
+	 * warm-up are paid once rather than once per export.
+	 */
+	private static void runBatch(String manifestPath, RepMapperOptions options) throws IOException {
+		if (options.getCheckpointPath() != null || options.getQuarantinePath() != null
+				|| options.getCohortCurvesPath() != null) {
+			System.out.println("ignoring --checkpoint, --quarantine and --cohort-curves in batch mode");
+			options.setCheckpointPath(null);
+			options.setQuarantinePath(null);
+			options.setCohortCurvesPath(null);
+		}
+		if (!options.getWindows().isEmpty()) {
+			System.out.println("ignoring --window in batch mode: every job would write to the same window outputs");
+			options.getWindows().clear();
+		}
+
+		List<BatchJob> jobs = BatchJob.readManifest(Paths.get(manifestPath));
+		for (int i = 0; i < jobs.size(); i++) {
+			BatchJob job = jobs.get(i);
+			System.out.println("Job " + (i + 1) + " of " + jobs.size() + " (" + job.getDialect() + ")");
+
+			RepDataMapper mapper = new RepDataMapper(job.getSourcePath(), job.getDestPath(), job.getFirstDate(),
+					job.getLastDate(), job.getDialect(), options);
+			mapper.run();
+		}
+	}
+
+	/** Maps exports dropped into a directory until the process is stopped. */
+	private static void runWatch(String[] args) throws IOException {
+		RepMapperOptions options = parseOptions(args, 5);
+		if (options.getCheckpointPath() != null || options.getCubePath() != null
+				|| options.getQuarantinePath() != null || options.getCohortCurvesPath() != null
+				|| !options.getWindows().isEmpty() || options.getBinDays() > 0 || options.getShardCount() > 1) {
+			System.out.println("ignoring --checkpoint, --cube, --quarantine, --cohort-curves, --window, --bin-days"
+					+ " and --shards in watch mode");
+			options.setCheckpointPath(null);
+			options.setCubePath(null);
+			options.setQuarantinePath(null);
+			options.setCohortCurvesPath(null);
+			options.getWindows().clear();
+			options.setBinDays(0);
+			options.setShardCount(0);
+		}
+
+		WatchFolderDaemon daemon = new WatchFolderDaemon(Paths.get(args[1]), Paths.get(args[2]),
+				LocalDate.parse(args[3]), LocalDate.parse(args[4]), options);
+		try {
+			daemon.run();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static RepMapperOptions parseOptions(String[] args, int firstOptionIndex) {
+		RepMapperOptions options = new RepMapperOptions();
+
+		for (int i = firstOptionIndex; i < args.length; i++) {
+			switch (args[i]) {
+			case "--dialect":
+				options.setDialect(ExportDialect.forName(args[++i]));
+				break;
+			case "--streaming":
+				options.setStreamingIngest(true);
+				break;
+			case "--mapped":
+				options.setMappedIngest(true);
+				break;
+			case "--ingest-threads":
+				options.setIngestThreads(Integer.parseInt(args[++i]));
+				break;
+			case "--threads":
+				options.setSummaryThreads(Integer.parseInt(args[++i]));
+				break;
+			case "--pipeline":
+				options.setPipelined(true);
+				break;
+			case "--memory-budget":
+				options.setMemoryBudgetMB(Integer.parseInt(args[++i]));
+				break;
+			case "--spill-dir":
+				options.setSpillDir(args[++i]);
+				break;
+			case "--window":
+				LocalDate windowFirstDate = LocalDate.parse(args[i + 1]);
+				LocalDate windowLastDate = LocalDate.parse(args[i + 2]);
+				if (windowLastDate.isBefore(windowFirstDate)) {
+					throw new IllegalArgumentException(
+							"--window " + windowFirstDate + " " + windowLastDate + ": the last date is before the first");
+				}
+				options.getWindows().add(new AnalysisWindow(windowFirstDate, windowLastDate, args[i + 3]));
+				i += 3;
+				break;
+			case "--bin-days":
+				options.setBinDays(Integer.parseInt(args[++i]));
+				break;
+			case "--shards":
+				options.setShardCount(Integer.parseInt(args[++i]));
+				break;
+			case "--run-length":
+				options.setRunLengthOutput(true);
+				break;
+			case "--columnar":
+				options.setColumnarOutput(true);
+				break;
+			case "--dedupe":
+				options.setDedupeRule(DedupeRule.forName(args[++i]));
+				break;
+			case "--quarantine":
+				options.setQuarantinePath(args[++i]);
+				break;
+			case "--cube":
+				options.setCubePath(args[++i]);
+				break;
+			case "--cohort-curves":
+				options.setCohortCurvesPath(args[++i]);
+				break;
+			case "--checkpoint":
+				options.setCheckpointPath(args[++i]);
+				break;
+			case "--full":
+				options.setFullRecompute(true);
+				break;
+			case "--verify-incremental":
+				options.setVerifyIncremental(true);
+				break;
+			case "--report":
+				options.setReportPath(args[++i]);
+				break;
+			case "--jmx":
+				options.setJmxReport(true);
+				break;
+			default:
+				System.out.println("ignoring unknown option: " + args[i]);
+			}
+		}
+
+		return options;
+	}
+}
@@ -0,0 +1,225 @@
+package rep.mapping.cli;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rep.mapping.BatchJob;
+import rep.mapping.CompressedFiles;
+import rep.mapping.RepDataMapper;
+import rep.mapping.RepMapperOptions;
+
+/**
+ * Keeps the mapper resident and maps every export that appears or changes in
+ * an input directory, including gzipped and zipped exports, so JVM startup and
+ * JIT warm-up are paid once rather than once per export. A file is only picked
+ * up once its size and modified time have held still for the settle time, so a
+ * file that is still being written is never read. Output is written to a
+ * temporary file in the output directory and renamed into place. If mapping
+ * fails, the temporary file is deleted and the export is left where it is and
+ * mapped again after a delay.
+ */
+public class WatchFolderDaemon {
+
+	private static final long POLL_MILLIS = 500;
+	private static final long SETTLE_NANOS = TimeUnit.SECONDS.toNanos(2);
+	private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+	private static final String EXPORT_EXTENSION = ".csv";
+
+	private final Path inputDir;
+	private final Path outputDir;
+	private final LocalDate firstDate;
+	private final LocalDate lastDate;
+	private final RepMapperOptions options;
+
+	private final Map<Path, FileState> pending = new HashMap<>();
+	private final Map<Path, FileState> mapped = new HashMap<>();
+
+	public WatchFolderDaemon(Path inputDir, Path outputDir, LocalDate firstDate, LocalDate lastDate,
+			RepMapperOptions options) throws IOException {
+		if (Files.isSameFile(inputDir, outputDir)) {
+			throw new IllegalArgumentException(
+					"output directory must differ from the watched directory: " + outputDir);
+		}
+		this.inputDir = inputDir;
+		this.outputDir = outputDir;
+		this.firstDate = firstDate;
+		this.lastDate = lastDate;
+		this.options = options;
+	}
+
+	/** Watches until the input directory goes away or the thread is interrupted. */
+	public void run() throws IOException, InterruptedException {
+		try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+			inputDir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+			System.out.println("Watching " + inputDir + " for exports, writing to " + outputDir);
+
+			// exports already waiting when the daemon starts are mapped too
+			noticeAll();
+
+			while (true) {
+				WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == OVERFLOW) {
+							noticeAll();
+						} else {
+							notice(inputDir.resolve((Path) event.context()));
+						}
+					}
+					if (!key.reset()) {
+						System.out.println("Stopped watching, directory is no longer accessible: " + inputDir);
+						return;
+					}
+				}
+				mapSettled();
+			}
+		}
+	}
+
+	private void noticeAll() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(inputDir)) {
+			for (Path file : files) {
+				notice(file);
+			}
+		}
+	}
+
+	private void notice(Path file) {
+		String name = file.getFileName().toString();
+		if (name.startsWith(".") || !isExport(file)) {
+			return;
+		}
+
+		FileState state = FileState.of(file);
+		if (state != null && !state.sameAs(pending.get(file))) {
+			pending.put(file, state);
+		}
+	}
+
+	/** Exports are {@code .csv} files, which may be gzipped, or zips holding one. */
+	private static boolean isExport(Path file) {
+		String name = CompressedFiles.stripCompressionExtension(file.getFileName().toString());
+		return name.toLowerCase().endsWith(EXPORT_EXTENSION) || CompressedFiles.isZip(file);
+	}
+
+	/** Maps the pending exports that have held still for the settle time. */
+	private void mapSettled() {
+		long now = System.nanoTime();
+		Map<Path, FileState> settled = new LinkedHashMap<>();
+		for (Iterator<Map.Entry<Path, FileState>> it = pending.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Path, FileState> entry = it.next();
+			Path file = entry.getKey();
+
+			FileState state = FileState.of(file);
+			if (state == null) {
+				it.remove();
+			} else if (!state.sameAs(entry.getValue())) {
+				entry.setValue(state);
+			} else if (now - entry.getValue().seenNanos >= SETTLE_NANOS) {
+				it.remove();
+				if (!state.sameAs(mapped.get(file))) {
+					settled.put(file, state);
+				}
+			}
+		}
+
+		for (Map.Entry<Path, FileState> entry : settled.entrySet()) {
+			Path file = entry.getKey();
+			if (map(file)) {
+				mapped.put(file, entry.getValue());
+				// a change while it was being mapped gets it mapped again once it settles
+				notice(file);
+			} else {
+				FileState state = FileState.of(file);
+				if (state != null) {
+					pending.put(file, state.retryAfter(RETRY_NANOS));
+				}
+			}
+		}
+	}
+
+	/** Maps the export into the output directory, returning false if it couldn't be. */
+	private boolean map(Path file) {
+		Path destPath = outputDir.resolve(BatchJob.defaultDestPath(file.getFileName().toString()));
+		// the temporary file keeps the dest's extension, so it is compressed the same way
+		Path tempPath = outputDir.resolve(".tmp-" + destPath.getFileName());
+		System.out.println("Mapping " + file);
+
+		try {
+			new RepDataMapper(file.toString(), tempPath.toString(), firstDate, lastDate, options).run();
+			Files.move(tempPath, destPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			System.out.println("Wrote " + destPath);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.out.println("unable to map " + file + ", retrying in "
+					+ TimeUnit.NANOSECONDS.toSeconds(RETRY_NANOS) + "s: \n" + describe(e));
+			try {
+				Files.deleteIfExists(tempPath);
+			} catch (IOException deleteFailure) {
+				System.out.println("unable to delete " + tempPath + ": \n" + deleteFailure.getMessage());
+			}
+			return false;
+		}
+	}
+
+	/** The failure's message followed by its causes', which say what actually went wrong. */
+	private static String describe(Throwable failure) {
+		StringBuilder description = new StringBuilder(String.valueOf(failure.getMessage()));
+		for (Throwable cause = failure.getCause(); cause != null; cause = cause.getCause()) {
+			description.append(": ").append(cause.getMessage());
+		}
+		return description.toString();
+	}
+
+	/** A file's size and modified time, and when they were first seen at these values. */
+	private static final class FileState {
+		private final long size;
+		private final long lastModifiedMillis;
+		private final long seenNanos;
+
+		private FileState(long size, long lastModifiedMillis, long seenNanos) {
+			this.size = size;
+			this.lastModifiedMillis = lastModifiedMillis;
+			this.seenNanos = seenNanos;
+		}
+
+		/** Returns the file's current state, or null if it is gone or not a regular file. */
+		static FileState of(Path file) {
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+				return attributes.isRegularFile()
+						? new FileState(attributes.size(), attributes.lastModifiedTime().toMillis(), System.nanoTime())
+						: null;
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		/** The same state, but not settled until the delay has passed on top of the settle time. */
+		FileState retryAfter(long delayNanos) {
+			return new FileState(size, lastModifiedMillis, System.nanoTime() + delayNanos);
+		}
+
+		boolean sameAs(FileState other) {
+			return other != null && size == other.size && lastModifiedMillis == other.lastModifiedMillis;
+		}
+	}
+}
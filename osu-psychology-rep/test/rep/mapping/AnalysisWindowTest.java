@@ -0,0 +1,34 @@
+package rep.mapping;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import rep.mapping.cli.RepMapperCli;
+
+/** A window must not end before it starts, whether it comes from the command line or not. */
+public class AnalysisWindowTest {
+
+	private static final LocalDate FIRST_DATE = LocalDate.of(2019, 1, 14);
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void lastDateBeforeFirstDateIsRejected() {
+		new AnalysisWindow(FIRST_DATE, FIRST_DATE.minusDays(1), "window.csv");
+	}
+
+	@Test
+	public void singleDayWindowIsAccepted() {
+		new AnalysisWindow(FIRST_DATE, FIRST_DATE, "window.csv");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void reversedWindowOptionIsRejected() throws IOException {
+		RepMapperCli.main(new String[] { "export.csv", "dense.csv", "2019-01-07", "2019-01-20", "--window",
+				"2019-01-20", "2019-01-14", fixture.path("window.csv").toString() });
+	}
+}
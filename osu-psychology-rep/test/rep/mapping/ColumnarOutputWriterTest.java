@@ -0,0 +1,33 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Columnar output too big for its int-indexed columns must fail up front, not wrap around mid-write. */
+public class ColumnarOutputWriterTest {
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void tooManyRowsFails() throws IOException {
+		int dayCount = Short.MAX_VALUE;
+		List<PackedSessions> participants = new ArrayList<>();
+		for (int i = 0; i <= ColumnarOutputWriter.MAX_ROWS / dayCount; i++) {
+			participants.add(new PackedSessions(String.format("P%05d", i)));
+		}
+		try {
+			new ColumnarOutputWriter(fixture.path("dense.col"), ExportDialect.JAVIER, LocalDate.of(2019, 1, 7),
+					dayCount, participants).close();
+		} finally {
+			assertFalse("wrote the file anyway", fixture.path("dense.col").toFile().exists());
+		}
+	}
+}
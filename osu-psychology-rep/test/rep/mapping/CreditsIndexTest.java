@@ -0,0 +1,60 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Every index answer must match the dense output row for the same participant and day. */
+public class CreditsIndexTest {
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test
+	public void answersMatchDenseOutput() throws IOException {
+		fixture.generateExport(ExportDialect.JAVIER, 200, 12, 60, 7L);
+		// leave sessions on both sides of the term out of it
+		LocalDate firstDate = MapperFixture.FIRST_DATE.plusDays(5);
+		LocalDate lastDate = fixture.getLastDate().minusDays(5);
+
+		RepDataMapper mapper = fixture.mapper("dense.csv", firstDate, lastDate, ExportDialect.JAVIER,
+				new RepMapperOptions());
+		mapper.run();
+		CreditsIndex index = mapper.readCreditsIndex();
+
+		List<String> lines = Files.readAllLines(fixture.path("dense.csv"), StandardCharsets.UTF_8);
+		List<String> labels = Arrays.asList(lines.get(0).split(","));
+		int idColumn = labels.indexOf(OutputColumn.PARTICIPANT_ID.getLabel());
+		int dateColumn = labels.indexOf(OutputColumn.DATE.getLabel());
+		int earnedColumn = labels.indexOf(OutputColumn.CREDITS_EARNED.getLabel());
+		int cumulativeEarnedColumn = labels.indexOf(OutputColumn.CUMULATIVE_CREDITS_EARNED.getLabel());
+		int treatedColumn = labels.indexOf(OutputColumn.RECIEVED_TREATMENT.getLabel());
+		int missedColumn = labels.indexOf(OutputColumn.CREDITS_MISSED.getLabel());
+		int cumulativeMissedColumn = labels.indexOf(OutputColumn.CUMULATIVE_CREDITS_MISSED.getLabel());
+
+		for (String line : lines.subList(1, lines.size())) {
+			String[] fields = line.split(",");
+			String participantId = fields[idColumn];
+			LocalDate date = LocalDate.parse(fields[dateColumn]);
+			String row = participantId + " " + date;
+
+			assertEquals(row, Double.parseDouble(fields[cumulativeEarnedColumn]),
+					index.getCumulativeCreditsEarned(participantId, date), 0);
+			assertEquals(row, Double.parseDouble(fields[cumulativeMissedColumn]),
+					index.getCumulativeCreditsMissed(participantId, date), 0);
+			assertEquals(row, Double.parseDouble(fields[earnedColumn]),
+					index.getCreditsEarned(participantId, date, date), 0);
+			assertEquals(row, Double.parseDouble(fields[missedColumn]),
+					index.getCreditsMissed(participantId, date, date), 0);
+			assertEquals(row, fields[treatedColumn].equals("1"), index.hasReceivedTreatment(participantId, date));
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/** Times parse to a second of day however they are padded, and anything else parses as invalid. */
+public class CsvLineTokenizerTest {
+
+	@Test
+	public void secondOfDayIgnoresPadding() {
+		int nine = 9 * 60 * 60;
+		assertEquals(nine, secondOfDay("9:00:00"));
+		assertEquals(nine, secondOfDay("09:00:00"));
+		assertEquals(nine, secondOfDay(" 9:00:00 "));
+		assertEquals(23 * 60 * 60 + 59 * 60 + 59, secondOfDay("23:59:59"));
+	}
+
+	@Test
+	public void malformedTimesAreInvalid() {
+		for (String time : new String[] { "", "NULL", "9:00", "9:0:00", "24:00:00", "9:60:00", "9:00:60", "9:00:00x",
+				"109:00:00" }) {
+			assertEquals(time, CsvLineTokenizer.INVALID_TIME, secondOfDay(time));
+		}
+	}
+
+	private static int secondOfDay(String time) {
+		CsvLineTokenizer fields = new CsvLineTokenizer("NULL", true);
+		fields.reset("P1," + time);
+		return fields.parseSecondOfDay(1);
+	}
+}
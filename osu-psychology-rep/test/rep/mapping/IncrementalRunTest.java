@@ -0,0 +1,52 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Carrying on from a checkpoint must write the same output as mapping the grown export from scratch. */
+public class IncrementalRunTest {
+
+	private static final LocalDate CHECKPOINT_DATE = LocalDate.of(2019, 1, 11);
+	private static final LocalDate LAST_DATE = LocalDate.of(2019, 1, 20);
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test
+	public void appendedRowsMatchFullRecompute() throws IOException {
+		fixture.writeExport(CHECKPOINT_DATE, "id,absence,credit,cancel,enroll,experiment,code,date,time",
+				"\"P00,0006\",0,1,NULL,1/2/19 9:00,18,A1,1/8/19,9:00:00",
+				"\"P\"\"7\",0,0.5,NULL,1/3/19 10:30,18,A1,1/10/19,9:00:00",
+				"P8,0,1,1/9/19 8:00,1/3/19 10:30,18,A1,1/12/19,9:00:00");
+		RepMapperOptions options = new RepMapperOptions();
+		options.setCheckpointPath(fixture.path("run.ckpt").toString());
+		fixture.mapper("incremental.csv", MapperFixture.FIRST_DATE, CHECKPOINT_DATE, ExportDialect.JAVIER, options)
+				.run();
+
+		Files.write(fixture.getExportPath(),
+				Arrays.asList("\"P00,0006\",1,0,NULL,1/2/19 9:00,18,A1,1/15/19,9:00:00",
+						"P9,0,2,NULL,1/4/19 11:00,18,A1,1/16/19,9:00:00"),
+				StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+		Path incrementalPath = fixture.path("incremental.csv");
+		options.setReportPath(fixture.path("report.json").toString());
+		fixture.mapper("incremental.csv", MapperFixture.FIRST_DATE, LAST_DATE, ExportDialect.JAVIER, options).run();
+		// a checkpoint that can't be applied falls back to a full recompute, which would hide a mismatch
+		String report = new String(Files.readAllBytes(fixture.path("report.json")), StandardCharsets.UTF_8);
+		assertFalse("fell back to a full recompute", report.contains("\"name\":\"ingest\""));
+
+		fixture.mapper("full.csv", MapperFixture.FIRST_DATE, LAST_DATE, ExportDialect.JAVIER, new RepMapperOptions())
+				.run();
+		assertArrayEquals(Files.readAllBytes(fixture.path("full.csv")), Files.readAllBytes(incrementalPath));
+	}
+}
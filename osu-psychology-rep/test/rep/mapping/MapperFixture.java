@@ -0,0 +1,96 @@
+package rep.mapping;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TemporaryFolder;
+
+import rep.mapping.bench.SyntheticExportGenerator;
+import rep.mapping.bench.SyntheticExportGenerator.Layout;
+
+/**
+ * Shared setup for tests that run the mapper: a temporary folder holding an
+ * export and the outputs mapped from it, with the mapper's progress lines kept
+ * off stdout while the test runs.
+ */
+public class MapperFixture extends ExternalResource {
+
+	static final LocalDate FIRST_DATE = LocalDate.of(2019, 1, 7);
+
+	private final TemporaryFolder folder = new TemporaryFolder();
+	private PrintStream stdout;
+
+	private Path exportPath;
+	private LocalDate lastDate;
+
+	@Override
+	protected void before() throws Throwable {
+		folder.create();
+		stdout = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+	}
+
+	@Override
+	protected void after() {
+		System.setOut(stdout);
+		folder.delete();
+	}
+
+	/** A path in the temporary folder; nothing is created there. */
+	Path path(String name) {
+		return folder.getRoot().toPath().resolve(name);
+	}
+
+	Path newFolder() throws IOException {
+		return folder.newFolder().toPath();
+	}
+
+	/** Generates an export in the dialect's layout, from the first date over dayCount days. */
+	void generateExport(ExportDialect dialect, int participantCount, int sessionsPerParticipant, int dayCount,
+			long seed) throws IOException {
+		SyntheticExportGenerator generator = new SyntheticExportGenerator(Layout.valueOf(dialect.name()),
+				participantCount, sessionsPerParticipant, FIRST_DATE, dayCount, seed);
+		exportPath = path("export.csv");
+		generator.write(exportPath);
+		lastDate = generator.getLastDate();
+	}
+
+	/** Writes the lines, labels first, as an export spanning the first date to lastDate. */
+	void writeExport(LocalDate lastDate, String... lines) throws IOException {
+		exportPath = path("export.csv");
+		Files.write(exportPath, Arrays.asList(lines), StandardCharsets.UTF_8);
+		this.lastDate = lastDate;
+	}
+
+	Path getExportPath() {
+		return exportPath;
+	}
+
+	LocalDate getLastDate() {
+		return lastDate;
+	}
+
+	/** A mapper from the export into the named file in the temporary folder. */
+	RepDataMapper mapper(String destName, LocalDate firstDate, LocalDate lastDate, ExportDialect dialect,
+			RepMapperOptions options) {
+		return new RepDataMapper(exportPath.toString(), path(destName).toString(), firstDate, lastDate, dialect,
+				options);
+	}
+
+	/** Maps the export's whole span into the named file and returns its path. */
+	Path map(String destName, ExportDialect dialect, RepMapperOptions options) {
+		mapper(destName, FIRST_DATE, lastDate, dialect, options).run();
+		return path(destName);
+	}
+}
@@ -0,0 +1,46 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Summarizing participants on a pool must write the same bytes as summarizing them one at a time. */
+public class ParallelSummariesTest {
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test
+	public void threadedOutputMatchesSequentialForJavier() throws IOException {
+		assertThreadedMatchesSequential(ExportDialect.JAVIER);
+	}
+
+	@Test
+	public void threadedOutputMatchesSequentialForOriginal() throws IOException {
+		assertThreadedMatchesSequential(ExportDialect.ORIGINAL);
+	}
+
+	private void assertThreadedMatchesSequential(ExportDialect dialect) throws IOException {
+		fixture.generateExport(dialect, 300, 12, 60, 42L);
+
+		byte[] sequential = map(dialect, 1, false);
+		assertTrue("sequential run wrote no rows", sequential.length > 0);
+		for (int threads : new int[] { 2, 4, 7 }) {
+			assertArrayEquals("--threads " + threads, sequential, map(dialect, threads, false));
+			assertArrayEquals("--pipeline --threads " + threads, sequential, map(dialect, threads, true));
+		}
+	}
+
+	private byte[] map(ExportDialect dialect, int threads, boolean pipelined) throws IOException {
+		RepMapperOptions options = new RepMapperOptions();
+		options.setSummaryThreads(threads);
+		options.setPipelined(pipelined);
+		return Files.readAllBytes(fixture.map("threads-" + threads + (pipelined ? "-pipelined" : "") + ".csv",
+				dialect, options));
+	}
+}
@@ -0,0 +1,75 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** The consumer must get every line in order, and any failure of the reader thread rather than a hang. */
+public class PipelinedLineReaderTest {
+
+	private static final List<String> LINES = Arrays.asList("id,credit", "P1,1", "P2,0.5", "P3,2", "P4,NULL");
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test(timeout = 10000)
+	public void readsEveryLineInOrder() throws IOException {
+		Path path = fixture.path("export.csv");
+		Files.write(path, LINES, StandardCharsets.UTF_8);
+
+		try (PipelinedLineReader reader = new PipelinedLineReader(path, 2, 1)) {
+			for (String line : LINES) {
+				assertEquals(line, reader.readLine());
+			}
+			assertNull(reader.readLine());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void readerFailureReachesTheConsumer() throws IOException {
+		// a zip entry name that isn't UTF-8 makes ZipInputStream throw IllegalArgumentException, not IOException
+		Path path = fixture.path("export.zip");
+		Files.write(path, zipWithMalformedEntryName());
+
+		try (PipelinedLineReader reader = new PipelinedLineReader(path, 2, 1)) {
+			while (reader.readLine() != null) {
+				// drain
+			}
+			fail("expected the reader thread's failure");
+		} catch (IllegalStateException e) {
+			assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+		}
+	}
+
+	private static byte[] zipWithMalformedEntryName() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+			zip.putNextEntry(new ZipEntry("qq.csv"));
+			zip.write(String.join("\n", LINES).getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+
+		byte[] zip = bytes.toByteArray();
+		byte[] name = "qq".getBytes(StandardCharsets.US_ASCII);
+		for (int i = 0; i + name.length <= zip.length; i++) {
+			if (zip[i] == name[0] && zip[i + 1] == name[1]) {
+				zip[i] = (byte) 0xC0;
+				zip[i + 1] = (byte) 0xC1;
+			}
+		}
+		return zip;
+	}
+}
@@ -0,0 +1,46 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Every rejected row must read back from the quarantine file as one field, exactly as it was in the export. */
+public class QuarantineTest {
+
+	private static final String BAD_CREDIT_ROW = "\"P,1\",0,x,NULL,NULL,18,A1,1/8/19,9:00:00";
+	private static final String BAD_DATE_ROW = "P2,0,1,NULL,NULL,18,A1,13/30/19,9:00:00";
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test
+	public void rejectedRowsReadBackUnchanged() throws IOException {
+		fixture.writeExport(LocalDate.of(2019, 1, 10), "id,absence,credit,cancel,enroll,experiment,code,date,time",
+				BAD_CREDIT_ROW, "P3,0,1,NULL,NULL,18,A1,1/8/19,9:00:00", BAD_DATE_ROW);
+		RepMapperOptions options = new RepMapperOptions();
+		options.setQuarantinePath(fixture.path("quarantine.csv").toString());
+		fixture.map("dense.csv", ExportDialect.JAVIER, options);
+
+		List<String> lines = Files.readAllLines(fixture.path("quarantine.csv"), StandardCharsets.UTF_8);
+		assertEquals(RowIssues.QUARANTINE_HEADER, lines.get(0));
+		assertEquals(3, lines.size());
+		assertRejected(lines.get(1), "2", RowIssue.BAD_CREDIT_EARNED, BAD_CREDIT_ROW);
+		assertRejected(lines.get(2), "4", RowIssue.BAD_SESSION_DATE, BAD_DATE_ROW);
+	}
+
+	private static void assertRejected(String line, String lineNumber, RowIssue issue, String row) {
+		CsvLineTokenizer fields = new CsvLineTokenizer();
+		fields.reset(line);
+		assertEquals(3, fields.getFieldCount());
+		assertEquals(lineNumber, fields.getString(0));
+		assertEquals(issue.name(), fields.getString(1));
+		assertEquals(row, fields.getString(2));
+	}
+}
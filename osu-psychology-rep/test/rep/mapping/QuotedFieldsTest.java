@@ -0,0 +1,47 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** A quoted export field, such as an id with a comma, must be written back as one quoted field. */
+public class QuotedFieldsTest {
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	/** An export whose ids need quoting, next to one that doesn't. */
+	static void writeQuotedIdExport(MapperFixture fixture) throws IOException {
+		fixture.writeExport(LocalDate.of(2019, 1, 20), "id,absence,credit,cancel,enroll,experiment,code,date,time",
+				"\"P00,0006\",0,1,NULL,1/2/19 9:00,18,A1,1/8/19,9:00:00",
+				"\"P00,0006\",1,0,NULL,1/2/19 9:00,18,A1,1/15/19,9:00:00",
+				"\"P\"\"7\",0,0.5,NULL,1/3/19 10:30,18,A1,1/10/19,9:00:00",
+				"P8,0,1,1/9/19 8:00,1/3/19 10:30,18,A1,1/12/19,9:00:00");
+	}
+
+	@Test
+	public void denseOutputQuotesIds() throws IOException {
+		writeQuotedIdExport(fixture);
+		String dense = new String(
+				Files.readAllBytes(fixture.map("dense.csv", ExportDialect.JAVIER, new RepMapperOptions())),
+				StandardCharsets.UTF_8);
+		assertTrue(dense.contains(System.lineSeparator() + "\"P00,0006\",1,2019-01-07,"));
+		assertTrue(dense.contains(System.lineSeparator() + "\"P\"\"7\",1,2019-01-07,"));
+		assertTrue(dense.contains(System.lineSeparator() + "P8,1,2019-01-07,"));
+	}
+
+	@Test
+	public void escapeQuotesOnlyWhenNeeded() {
+		assertEquals("P8", CsvRecordWriter.escape("P8"));
+		assertEquals("\"P00,0006\"", CsvRecordWriter.escape("P00,0006"));
+		assertEquals("\"P\"\"7\"", CsvRecordWriter.escape("P\"7"));
+		assertEquals("\"a\nb\"", CsvRecordWriter.escape("a\nb"));
+	}
+}
@@ -0,0 +1,40 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Expanding run-length output must give back the dense output byte for byte. */
+public class RunLengthExpanderTest {
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test
+	public void expandedOutputMatchesDense() throws IOException {
+		fixture.generateExport(ExportDialect.JAVIER, 100, 8, 45, 11L);
+		assertExpandedMatchesDense();
+	}
+
+	@Test
+	public void expandedOutputKeepsQuotedIds() throws IOException {
+		QuotedFieldsTest.writeQuotedIdExport(fixture);
+		assertExpandedMatchesDense();
+	}
+
+	private void assertExpandedMatchesDense() throws IOException {
+		byte[] dense = Files.readAllBytes(fixture.map("dense.csv", ExportDialect.JAVIER, new RepMapperOptions()));
+		RepMapperOptions options = new RepMapperOptions();
+		options.setRunLengthOutput(true);
+		Path runsPath = fixture.map("runs.csv", ExportDialect.JAVIER, options);
+
+		Path expandedPath = fixture.path("expanded.csv");
+		RunLengthExpander.expand(runsPath, expandedPath);
+		assertArrayEquals(dense, Files.readAllBytes(expandedPath));
+	}
+}
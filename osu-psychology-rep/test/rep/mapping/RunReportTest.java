@@ -0,0 +1,54 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** The published MXBean must show the same stages as the run's written report. */
+public class RunReportTest {
+
+	private static final Pattern STAGE = Pattern.compile("\\{\"name\":\"([^\"]+)\",\"millis\":\\d+,\"rowsIn\":(\\d+)");
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test
+	public void publishedStagesMatchRun() throws IOException, JMException {
+		fixture.generateExport(ExportDialect.JAVIER, 50, 6, 30, 17L);
+		RepMapperOptions options = new RepMapperOptions();
+		options.setSummaryThreads(4);
+		options.setJmxReport(true);
+		options.setReportPath(fixture.path("report.json").toString());
+		fixture.map("dense.csv", ExportDialect.JAVIER, options);
+
+		List<String> reported = new ArrayList<>();
+		Matcher stages = STAGE.matcher(
+				new String(Files.readAllBytes(fixture.path("report.json")), StandardCharsets.UTF_8));
+		while (stages.find()) {
+			reported.add(stages.group(1) + " " + stages.group(2));
+		}
+
+		List<String> published = new ArrayList<>();
+		CompositeData[] stageData = (CompositeData[]) ManagementFactory.getPlatformMBeanServer()
+				.getAttribute(new ObjectName(RunReport.OBJECT_NAME), "Stages");
+		for (CompositeData stage : stageData) {
+			published.add(stage.get("name") + " " + stage.get("rowsIn"));
+		}
+		assertEquals(reported, published);
+		assertEquals("ingest", published.get(0).split(" ")[0]);
+	}
+}
@@ -0,0 +1,42 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Start times written differently must collapse as one session, and malformed ones only with their own text. */
+public class SessionDeduperTest {
+
+	private static final LocalDate LAST_DATE = LocalDate.of(2019, 1, 10);
+	private static final String LABELS = "id,absence,credit,cancel,enroll,experiment,code,date,time";
+	private static final String SESSION = "P1,0,1,NULL,NULL,18,A1,1/8/19,";
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test
+	public void startTimesMatchOnSecondOfDay() throws IOException {
+		fixture.writeExport(LAST_DATE, LABELS, SESSION + "9:00:00", SESSION + "09:00:00", SESSION + " 9:00:00 ",
+				SESSION + "9am", SESSION + "9am", SESSION + "10am");
+		RepMapperOptions options = new RepMapperOptions();
+		options.setDedupeRule(DedupeRule.LAST_ROW);
+		options.setReportPath(fixture.path("report.json").toString());
+		fixture.map("deduped.csv", ExportDialect.JAVIER, options);
+
+		String report = new String(Files.readAllBytes(fixture.path("report.json")), StandardCharsets.UTF_8);
+		assertTrue(report, report.contains("\"collapsedRows\":3"));
+		assertTrue(report, report.contains("\"BAD_START_TIME\":3"));
+
+		fixture.writeExport(LAST_DATE, LABELS, SESSION + "9:00:00", SESSION + "9am", SESSION + "10am");
+		fixture.map("distinct.csv", ExportDialect.JAVIER, new RepMapperOptions());
+		assertArrayEquals(Files.readAllBytes(fixture.path("distinct.csv")),
+				Files.readAllBytes(fixture.path("deduped.csv")));
+	}
+}
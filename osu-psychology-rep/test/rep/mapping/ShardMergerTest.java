@@ -0,0 +1,40 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Merging the shards listed in a manifest must give back the single-file output byte for byte. */
+public class ShardMergerTest {
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test
+	public void mergedShardsMatchSingleFile() throws IOException {
+		fixture.generateExport(ExportDialect.JAVIER, 100, 8, 45, 13L);
+		assertMergedMatchesSingleFile(4);
+	}
+
+	@Test
+	public void mergedShardsKeepQuotedIds() throws IOException {
+		QuotedFieldsTest.writeQuotedIdExport(fixture);
+		assertMergedMatchesSingleFile(3);
+	}
+
+	private void assertMergedMatchesSingleFile(int shardCount) throws IOException {
+		byte[] single = Files.readAllBytes(fixture.map("single.csv", ExportDialect.JAVIER, new RepMapperOptions()));
+		RepMapperOptions options = new RepMapperOptions();
+		options.setShardCount(shardCount);
+		Path shardedPath = fixture.map("sharded.csv", ExportDialect.JAVIER, options);
+
+		Path mergedPath = fixture.path("merged.csv");
+		ShardMerger.merge(ShardedOutputWriter.manifestPath(shardedPath), mergedPath);
+		assertArrayEquals(single, Files.readAllBytes(mergedPath));
+	}
+}
@@ -0,0 +1,43 @@
+package rep.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/** A shard writer that throws must fail the run, however many participants are still to be added. */
+public class ShardedOutputWriterTest {
+
+	private static final int PARTICIPANTS = 1000;
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Test(timeout = 10_000)
+	public void uncheckedWriteFailureFailsRun() throws IOException {
+		IllegalArgumentException failure = new IllegalArgumentException("unwritable participant");
+		AtomicInteger written = new AtomicInteger();
+		try (ShardedOutputWriter writer = new ShardedOutputWriter(fixture.path("dense.csv"), 2, "id",
+				(x, y) -> {
+					if (written.incrementAndGet() == 3) {
+						throw failure;
+					}
+					y.line(x.get(0).getParticipantId());
+				})) {
+			for (int i = 0; i < PARTICIPANTS; i++) {
+				OutputRecord record = new OutputRecord();
+				record.setParticipantId(String.format("P%04d", i));
+				writer.add(Collections.singletonList(record));
+			}
+			writer.finish(ShardedOutputWriter.manifestPath(fixture.path("dense.csv")));
+			fail("the write failure was lost");
+		} catch (IllegalArgumentException e) {
+			assertEquals(failure, e);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package rep.mapping;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/** An output that can't be written must fail the run rather than leave a partial file looking complete. */
+public class WriteFailureTest {
+
+	@Rule
+	public MapperFixture fixture = new MapperFixture();
+
+	@Before
+	public void generateExport() throws IOException {
+		fixture.generateExport(ExportDialect.JAVIER, 20, 4, 14, 3L);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void unwritableDestFails() throws IOException {
+		run(fixture.newFolder(), new RepMapperOptions());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void unwritableShardFails() throws IOException {
+		RepMapperOptions options = new RepMapperOptions();
+		options.setShardCount(2);
+		run(fixture.newFolder().resolve("missing").resolve("dense.csv"), options);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void unwritableWindowFails() throws IOException {
+		RepMapperOptions options = new RepMapperOptions();
+		options.getWindows().add(new AnalysisWindow(MapperFixture.FIRST_DATE, MapperFixture.FIRST_DATE.plusDays(6),
+				fixture.newFolder().toString()));
+		run(fixture.path("dense.csv"), options);
+	}
+
+	private void run(Path destPath, RepMapperOptions options) {
+		new RepDataMapper(fixture.getExportPath().toString(), destPath.toString(), MapperFixture.FIRST_DATE,
+				fixture.getLastDate(), ExportDialect.JAVIER, options).run();
+	}
+}